@@ -0,0 +1,225 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class CheckpointStore {
+
+    public static final String CHECKPOINT_FOLDER = ".checkpoints";
+
+    private static final String SUFFIX = ".checkpoint", PENDING_SUFFIX = ".pending";
+
+    // "PLCP", format, state version, reserved, data length, timestamp
+    private static final int MAGIC = 0x504C4350, FORMAT = 1, HEADER_SIZE = 32;
+
+    // only POSIX file systems replace and delete mapped files, others lock them until the mapping is collected
+    private static final boolean MAPPED = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final File folder;
+    private final PluginLogger logger;
+    private final ConcurrentHashMap<PluginDefinition, Pending> pending;
+
+    protected CheckpointStore(File pluginFolder, PluginLogger logger) {
+        this.folder = new File(pluginFolder, CHECKPOINT_FOLDER);
+        this.logger = logger;
+        this.pending = new ConcurrentHashMap<PluginDefinition, Pending>();
+    }
+
+    protected ByteBuffer create(PluginDefinition owner, int stateVersion, long size) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Checkpoint size " + size + " is out of range!");
+        }
+        if (!this.folder.isDirectory() && !this.folder.mkdirs()) {
+            throw new IOException("Could not create " + this.folder);
+        }
+
+        // written next to the last checkpoint, which stays valid until the plugin is disabled
+        // every call gets its own file, buffers of an earlier call are never truncated under the plugin
+        File file = Files.createTempFile(this.folder.toPath(), owner.getName() + ".", PENDING_SUFFIX).toFile();
+        ByteBuffer buffer;
+        if (MAPPED) {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(HEADER_SIZE + size);
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + size);
+            } finally {
+                // the mapping stays valid without the channel
+                randomAccessFile.close();
+            }
+        } else {
+            // written to the file on commit
+            buffer = ByteBuffer.allocate((int) (HEADER_SIZE + size));
+        }
+        buffer.putInt(MAGIC).putInt(FORMAT).putInt(stateVersion).putInt(0).putLong(size).putLong(System.currentTimeMillis());
+
+        // a second checkpoint of the same plugin replaces the first one
+        Pending replaced = this.pending.put(owner, new Pending(file, buffer));
+        if (replaced != null) {
+            // fails on file systems, that lock mapped files, the next scan removes it
+            replaced.file.delete();
+        }
+        buffer.position(HEADER_SIZE);
+        return buffer.slice();
+    }
+
+    protected void commit(PluginDefinition owner) {
+        Pending checkpoint = this.pending.remove(owner);
+        if (checkpoint == null) {
+            return;
+        }
+
+        // flush the pages and replace the old checkpoint at once
+        try {
+            checkpoint.flush();
+            Files.move(checkpoint.file.toPath(), new File(this.folder, owner.getName() + SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.logger.log(LogLevel.DEBUG, LifecycleStage.DISABLING, owner, "Checkpoint written", (checkpoint.buffer.capacity() - HEADER_SIZE) + " bytes", null);
+        } catch (IOException print) {
+            checkpoint.file.delete();
+            this.logger.log(LogLevel.ERROR, LifecycleStage.DISABLING, owner, "Checkpoint not written", null, print);
+        }
+    }
+
+    protected ByteBuffer open(PluginDefinition owner, int stateVersion) {
+        File file = new File(this.folder, owner.getName() + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            // mapped read-only, the state is never copied onto the heap
+            // a mapped file can't be replaced on other file systems, so the next commit would fail: copy it
+            ByteBuffer buffer;
+            if (MAPPED) {
+                RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                try {
+                    buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+                } finally {
+                    randomAccessFile.close();
+                }
+            } else {
+                buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).asReadOnlyBuffer();
+            }
+
+            // the header must match, otherwise the state is rebuilt
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+                this.logger.log(LogLevel.WARNING, LifecycleStage.ENABLING, owner, "Checkpoint is corrupt", file, null);
+                return null;
+            }
+            if (buffer.getInt(8) != stateVersion) {
+                this.logger.log(LogLevel.INFO, LifecycleStage.ENABLING, owner, "Checkpoint has another state version", buffer.getInt(8) + " != " + stateVersion, null);
+                return null;
+            }
+            long size = buffer.getLong(16);
+            if (size != buffer.capacity() - HEADER_SIZE) {
+                this.logger.log(LogLevel.WARNING, LifecycleStage.ENABLING, owner, "Checkpoint is corrupt", file, null);
+                return null;
+            }
+            buffer.position(HEADER_SIZE);
+            return buffer.slice();
+        } catch (IOException print) {
+            this.logger.log(LogLevel.ERROR, LifecycleStage.ENABLING, owner, "Checkpoint not read", file, print);
+            return null;
+        }
+    }
+
+    protected boolean delete(PluginDefinition owner) {
+        Pending checkpoint = this.pending.remove(owner);
+        if (checkpoint != null) {
+            checkpoint.file.delete();
+        }
+        return new File(this.folder, owner.getName() + SUFFIX).delete();
+    }
+
+    protected void retainAll(Collection<String> pluginNames) {
+        File[] files = this.folder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // checkpoints of removed plugins and pending ones of a crashed run are deleted
+        for (File file : files) {
+            String fileName = file.getName();
+            boolean stale = fileName.endsWith(PENDING_SUFFIX) && !this.isPending(file);
+            if (fileName.endsWith(SUFFIX)) {
+                stale = !pluginNames.contains(fileName.substring(0, fileName.length() - SUFFIX.length()));
+            }
+            if (stale && file.delete()) {
+                this.logger.log(LogLevel.INFO, LifecycleStage.DISCOVERED, (String) null, "Checkpoint removed", file, null);
+            }
+        }
+    }
+
+    private boolean isPending(File file) {
+        for (Pending checkpoint : this.pending.values()) {
+            if (checkpoint.file.equals(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Pending {
+
+        private final File file;
+        private final ByteBuffer buffer;
+
+        private Pending(File file, ByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private void flush() throws IOException {
+            if (this.buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) this.buffer).force();
+                return;
+            }
+            RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+            try {
+                ByteBuffer source = this.buffer.duplicate();
+                source.clear();
+                while (source.hasRemaining()) {
+                    randomAccessFile.getChannel().write(source);
+                }
+                randomAccessFile.getChannel().force(true);
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class ClassPrefetcher {
+
+    // class names per task, small enough to spread a plugin over all threads
+    private static final int CHUNK_SIZE = 32;
+
+    private final PluginLogger logger;
+    private volatile boolean enabled, initialize;
+    private Executor executor;
+
+    protected ClassPrefetcher(PluginLogger logger) {
+        this.logger = logger;
+    }
+
+    protected void prefetch(List<PluginDefinition> list) {
+        if (!this.enabled) {
+            return;
+        }
+
+        // the list is in enable order, so the first plugins are prefetched first
+        for (PluginDefinition pluginDefinition : list) {
+            String[] classNames = pluginDefinition.takePrefetchClasses();
+            if (classNames.length == 0) {
+                continue;
+            }
+            ClassLoader classLoader = pluginDefinition.getClassLoader();
+            AtomicInteger remaining = new AtomicInteger((classNames.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            AtomicInteger loaded = new AtomicInteger();
+            for (int from = 0; from < classNames.length; from += CHUNK_SIZE) {
+                String[] chunk = Arrays.copyOfRange(classNames, from, Math.min(from + CHUNK_SIZE, classNames.length));
+                this.getExecutor().execute(new Chunk(pluginDefinition, classLoader, chunk, remaining, loaded, this.initialize));
+            }
+        }
+    }
+
+    private class Chunk implements Runnable {
+
+        private final PluginDefinition owner;
+        private final ClassLoader classLoader;
+        private final String[] classNames;
+        private final AtomicInteger remaining, loaded;
+        private final boolean initialize;
+
+        private Chunk(PluginDefinition owner, ClassLoader classLoader, String[] classNames, AtomicInteger remaining, AtomicInteger loaded, boolean initialize) {
+            this.owner = owner;
+            this.classLoader = classLoader;
+            this.classNames = classNames;
+            this.remaining = remaining;
+            this.loaded = loaded;
+            this.initialize = initialize;
+        }
+
+        @Override
+        public void run() {
+            long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+            for (String className : this.classNames) {
+                try {
+                    // parallel capable loaders only lock the class name, so the chunks don't block each other
+                    Class.forName(className, this.initialize, this.classLoader);
+                    this.loaded.incrementAndGet();
+                } catch (ClassNotFoundException ignored) {
+                    // optional dependencies may be missing, the plugin will find out on its own
+                } catch (LinkageError ignored) {
+                    // reported, when the plugin really uses the class
+                }
+            }
+            this.owner.account(cpuStart, allocationStart);
+            if (this.remaining.decrementAndGet() == 0) {
+                ClassPrefetcher.this.logger.log(LogLevel.DEBUG, LifecycleStage.ENABLING, this.owner, "Classes prefetched", this.loaded.get() + " classes", null);
+            }
+        }
+    }
+
+    protected void setEnabled(boolean enabled, boolean initialize) {
+        this.initialize = initialize;
+        this.enabled = enabled;
+    }
+
+    private synchronized Executor getExecutor() {
+        if (this.executor == null) {
+            this.executor = createDefaultExecutor();
+        }
+        return this.executor;
+    }
+
+    protected synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PluginManager-Prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,433 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.minestar.library.plugin.units.VersionRange;
+
+public class DependencyResolver {
+
+    private static final int MAX_STEPS = 250000;
+
+    private final PluginDefinition[] plugins;
+    private final int[] positionOf;
+    private final int[][] candidates;
+    private final String[] names;
+    private final int[] constraintOffsets, constraintTargets, constraintOwners;
+    private final int[][] dependentConstraints;
+    private final Map<Long, Boolean> satisfied;
+    private final int[] selected;
+    private final String[] pruned;
+    private final int[][] viable;
+    private boolean searchCapped;
+
+    protected DependencyResolver(Collection<PluginDefinition> pluginDefinitions) {
+        // index the candidates by name, newest version first
+        Map<String, List<PluginDefinition>> byName = new TreeMap<String, List<PluginDefinition>>();
+        for (PluginDefinition pluginDefinition : pluginDefinitions) {
+            List<PluginDefinition> list = byName.get(pluginDefinition.getName());
+            if (list == null) {
+                list = new ArrayList<PluginDefinition>();
+                byName.put(pluginDefinition.getName(), list);
+            }
+            list.add(pluginDefinition);
+        }
+        Comparator<PluginDefinition> newestFirst = new Comparator<PluginDefinition>() {
+            @Override
+            public int compare(PluginDefinition first, PluginDefinition second) {
+                return second.getParsedVersion().compareTo(first.getParsedVersion());
+            }
+        };
+
+        // every name gets a position, every candidate a dense id
+        this.names = this.orderNames(byName);
+        this.candidates = new int[this.names.length][];
+        this.plugins = new PluginDefinition[pluginDefinitions.size()];
+        this.positionOf = new int[this.plugins.length];
+        Map<String, Integer> positions = new HashMap<String, Integer>(this.names.length * 2);
+        int id = 0;
+        for (int position = 0; position < this.names.length; position++) {
+            List<PluginDefinition> list = byName.get(this.names[position]);
+            Collections.sort(list, newestFirst);
+            this.candidates[position] = new int[list.size()];
+            for (int index = 0; index < list.size(); index++) {
+                this.plugins[id] = list.get(index);
+                this.positionOf[id] = position;
+                this.candidates[position][index] = id++;
+            }
+            positions.put(this.names[position], position);
+        }
+
+        // flatten the constraints: owner, targeted position (-1 if unknown)
+        int constraints = 0;
+        for (PluginDefinition pluginDefinition : this.plugins) {
+            constraints += pluginDefinition.getDependencies().length;
+        }
+        this.constraintOffsets = new int[this.plugins.length + 1];
+        this.constraintTargets = new int[constraints];
+        this.constraintOwners = new int[constraints];
+        int[] dependentCount = new int[this.names.length];
+        int constraint = 0;
+        for (id = 0; id < this.plugins.length; id++) {
+            this.constraintOffsets[id] = constraint;
+            for (String dependency : this.plugins[id].getDependencies()) {
+                Integer target = positions.get(dependency);
+                this.constraintTargets[constraint] = target != null ? target : -1;
+                this.constraintOwners[constraint++] = id;
+                if (target != null) {
+                    dependentCount[target]++;
+                }
+            }
+        }
+        this.constraintOffsets[this.plugins.length] = constraint;
+
+        // reverse index: constraints targeting a position
+        this.dependentConstraints = new int[this.names.length][];
+        for (int position = 0; position < this.names.length; position++) {
+            this.dependentConstraints[position] = new int[dependentCount[position]];
+            dependentCount[position] = 0;
+        }
+        for (constraint = 0; constraint < this.constraintTargets.length; constraint++) {
+            int target = this.constraintTargets[constraint];
+            if (target >= 0) {
+                this.dependentConstraints[target][dependentCount[target]++] = constraint;
+            }
+        }
+
+        this.satisfied = new HashMap<Long, Boolean>();
+        this.selected = new int[this.names.length];
+        this.pruned = new String[this.plugins.length];
+        this.viable = new int[this.names.length][];
+        this.prune();
+        if (!this.search()) {
+            this.searchCapped = true;
+            this.downgrade();
+        }
+    }
+
+    private String[] orderNames(Map<String, List<PluginDefinition>> byName) {
+        // dependents are decided before their dependencies, so a plugin isn't dropped,
+        // only because a newer version of its dependency was picked first
+        List<String> postOrder = new ArrayList<String>(byName.size());
+        Set<String> visited = new HashSet<String>();
+        Deque<String> stack = new ArrayDeque<String>();
+        Deque<Iterator<String>> iterators = new ArrayDeque<Iterator<String>>();
+        for (String root : byName.keySet()) {
+            if (!visited.add(root)) {
+                continue;
+            }
+            stack.push(root);
+            iterators.push(this.getDependencyNames(byName.get(root)).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<String> iterator = iterators.peek();
+                if (iterator.hasNext()) {
+                    String dependency = iterator.next();
+                    if (byName.containsKey(dependency) && visited.add(dependency)) {
+                        stack.push(dependency);
+                        iterators.push(this.getDependencyNames(byName.get(dependency)).iterator());
+                    }
+                } else {
+                    postOrder.add(stack.pop());
+                    iterators.pop();
+                }
+            }
+        }
+        Collections.reverse(postOrder);
+        return postOrder.toArray(new String[postOrder.size()]);
+    }
+
+    private Set<String> getDependencyNames(List<PluginDefinition> list) {
+        Set<String> dependencies = new TreeSet<String>();
+        for (PluginDefinition pluginDefinition : list) {
+            dependencies.addAll(Arrays.asList(pluginDefinition.getDependencies()));
+        }
+        return dependencies;
+    }
+
+    private void prune() {
+        // drop candidates, whose dependencies no remaining version can satisfy, until nothing changes
+        // polynomial, and takes the hopeless plugins out before the search can branch on them
+        Deque<Integer> worklist = new ArrayDeque<Integer>();
+        for (int id = 0; id < this.plugins.length; id++) {
+            worklist.add(id);
+        }
+        while (!worklist.isEmpty()) {
+            int candidate = worklist.poll();
+            if (this.pruned[candidate] != null) {
+                continue;
+            }
+            String reason = this.findUnsatisfiable(candidate);
+            if (reason == null) {
+                continue;
+            }
+            this.pruned[candidate] = reason;
+
+            // the plugins depending on this name may have lost their last option
+            for (int constraint : this.dependentConstraints[this.positionOf[candidate]]) {
+                int owner = this.constraintOwners[constraint];
+                if (this.pruned[owner] == null) {
+                    worklist.add(owner);
+                }
+            }
+        }
+
+        for (int position = 0; position < this.names.length; position++) {
+            int count = 0;
+            int[] list = new int[this.candidates[position].length];
+            for (int candidate : this.candidates[position]) {
+                if (this.pruned[candidate] == null) {
+                    list[count++] = candidate;
+                }
+            }
+            this.viable[position] = Arrays.copyOf(list, count);
+        }
+    }
+
+    private String findUnsatisfiable(int candidate) {
+        for (int constraint = this.constraintOffsets[candidate]; constraint < this.constraintOffsets[candidate + 1]; constraint++) {
+            int target = this.constraintTargets[constraint];
+            if (target < 0) {
+                return "requires '" + this.describe(constraint) + "', which is missing";
+            }
+            if (target == this.positionOf[candidate]) {
+                if (!this.isSatisfied(constraint, candidate)) {
+                    return "requires '" + this.describe(constraint) + "', which it does not satisfy itself";
+                }
+                continue;
+            }
+            boolean found = false;
+            for (int dependency : this.candidates[target]) {
+                if (this.pruned[dependency] == null && this.isSatisfied(constraint, dependency)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return "requires '" + this.describe(constraint) + "', which no loadable version satisfies";
+            }
+        }
+        return null;
+    }
+
+    private boolean search() {
+        // iterative backtracking: newest version first, "none" as the last choice
+        // excluding every plugin is always consistent, so the search terminates
+        int[] choice = new int[this.names.length];
+        int position = 0;
+        if (this.names.length > 0) {
+            choice[0] = -1;
+        }
+        int steps = 0;
+        while (position < this.names.length) {
+            if (++steps > MAX_STEPS) {
+                return false;
+            }
+            int option = ++choice[position];
+            int[] list = this.viable[position];
+            if (option > list.length) {
+                // exhausted, go back one position
+                position--;
+                continue;
+            }
+            int candidate = option < list.length ? list[option] : -1;
+            if (this.isAcceptable(position, candidate)) {
+                this.selected[position++] = candidate;
+                if (position < this.names.length) {
+                    choice[position] = -1;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void downgrade() {
+        // the search gave up: start with the newest version everywhere and step every plugin,
+        // whose dependencies aren't met, down to its next version or "none" until nothing changes
+        // every step only goes down, so this terminates and the result is always consistent
+        int[] option = new int[this.names.length];
+        for (int position = 0; position < this.names.length; position++) {
+            this.selected[position] = this.viable[position].length > 0 ? this.viable[position][0] : -1;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int position = 0; position < this.names.length; position++) {
+                int candidate = this.selected[position];
+                if (candidate >= 0 && !this.isMet(candidate)) {
+                    int next = ++option[position];
+                    this.selected[position] = next < this.viable[position].length ? this.viable[position][next] : -1;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private boolean isMet(int candidate) {
+        for (int constraint = this.constraintOffsets[candidate]; constraint < this.constraintOffsets[candidate + 1]; constraint++) {
+            int target = this.constraintTargets[constraint];
+            int dependency = target == this.positionOf[candidate] ? candidate : this.selected[target];
+            if (dependency < 0 || !this.isSatisfied(constraint, dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAcceptable(int position, int candidate) {
+        // decided plugins depending on this name must accept the candidate
+        for (int constraint : this.dependentConstraints[position]) {
+            int owner = this.constraintOwners[constraint];
+            int ownerPosition = this.positionOf[owner];
+            if (ownerPosition < position && this.selected[ownerPosition] == owner) {
+                if (candidate < 0 || !this.isSatisfied(constraint, candidate)) {
+                    return false;
+                }
+            }
+        }
+        if (candidate < 0) {
+            return true;
+        }
+
+        // the candidate must accept the decided dependencies
+        for (int constraint = this.constraintOffsets[candidate]; constraint < this.constraintOffsets[candidate + 1]; constraint++) {
+            int target = this.constraintTargets[constraint];
+            if (target < 0) {
+                return false;
+            }
+            if (target < position && (this.selected[target] < 0 || !this.isSatisfied(constraint, this.selected[target]))) {
+                return false;
+            }
+            if (target == position && !this.isSatisfied(constraint, candidate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSatisfied(int constraint, int candidate) {
+        // constraint checks are memoized, the search asks the same questions over and over
+        Long key = ((long) constraint << 32) | candidate;
+        Boolean result = this.satisfied.get(key);
+        if (result == null) {
+            result = this.getRange(constraint).contains(this.plugins[candidate].getParsedVersion());
+            this.satisfied.put(key, result);
+        }
+        return result;
+    }
+
+    private VersionRange getRange(int constraint) {
+        int owner = this.constraintOwners[constraint];
+        return this.plugins[owner].getDependencyRanges()[constraint - this.constraintOffsets[owner]];
+    }
+
+    private String describe(int constraint) {
+        int owner = this.constraintOwners[constraint];
+        return this.plugins[owner].getDependencies()[constraint - this.constraintOffsets[owner]] + ":" + this.getRange(constraint);
+    }
+
+    private String describePlugin(int candidate) {
+        return this.plugins[candidate].getName() + " v" + this.plugins[candidate].getVersion();
+    }
+
+    protected Map<String, PluginDefinition> getSelection() {
+        Map<String, PluginDefinition> selection = new HashMap<String, PluginDefinition>(this.names.length * 2);
+        for (int position = 0; position < this.names.length; position++) {
+            if (this.selected[position] >= 0) {
+                selection.put(this.names[position], this.plugins[this.selected[position]]);
+            }
+        }
+        return selection;
+    }
+
+    protected boolean isSearchCapped() {
+        return this.searchCapped;
+    }
+
+    protected Map<String, String> getConflicts() {
+        // explain every name without a selected version
+        Map<String, String> conflicts = new LinkedHashMap<String, String>();
+        for (int position = 0; position < this.names.length; position++) {
+            if (this.selected[position] >= 0) {
+                continue;
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int candidate : this.candidates[position]) {
+                if (builder.length() > 0) {
+                    builder.append("; ");
+                }
+                builder.append('v').append(this.plugins[candidate].getVersion()).append(' ').append(this.explain(position, candidate));
+            }
+            conflicts.put(this.names[position], builder.toString());
+        }
+        return conflicts;
+    }
+
+    private String explain(int position, int candidate) {
+        if (this.pruned[candidate] != null) {
+            return this.pruned[candidate];
+        }
+
+        // the candidate's own dependencies
+        for (int constraint = this.constraintOffsets[candidate]; constraint < this.constraintOffsets[candidate + 1]; constraint++) {
+            int target = this.constraintTargets[constraint];
+            if (target < 0) {
+                return "requires '" + this.describe(constraint) + "', which is missing";
+            }
+            int dependency = target == position ? candidate : this.selected[target];
+            if (dependency < 0) {
+                return "requires '" + this.describe(constraint) + "', which could not be resolved";
+            }
+            if (!this.isSatisfied(constraint, dependency)) {
+                return "requires '" + this.describe(constraint) + "', but " + this.describePlugin(dependency) + " was selected";
+            }
+        }
+
+        // the selected plugins depending on this one
+        for (int constraint : this.dependentConstraints[position]) {
+            int owner = this.constraintOwners[constraint];
+            if (this.selected[this.positionOf[owner]] == owner && !this.isSatisfied(constraint, candidate)) {
+                return "is rejected by " + this.describePlugin(owner) + ", which requires '" + this.describe(constraint) + "'";
+            }
+        }
+        return "has no consistent combination of dependencies";
+    }
+
+}
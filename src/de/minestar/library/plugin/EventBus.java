@@ -0,0 +1,257 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.units.Priority;
+
+public class EventBus {
+
+    private static final Subscriber[] NO_HANDLERS = new Subscriber[0];
+
+    private volatile Subscriber[] subscribers;
+    private volatile ConcurrentHashMap<Class<?>, Subscriber[]> dispatchers;
+    private final ConcurrentLinkedQueue<Object> asyncQueue;
+    private final AtomicBoolean asyncScheduled;
+    private final Runnable asyncDrain;
+    private final PluginLogger logger;
+    private Executor executor;
+    private volatile boolean metered;
+    private volatile MethodHandle forwarder;
+
+    protected EventBus(PluginLogger logger) {
+        this.logger = logger;
+        this.subscribers = new Subscriber[0];
+        this.dispatchers = new ConcurrentHashMap<Class<?>, Subscriber[]>();
+        this.asyncQueue = new ConcurrentLinkedQueue<Object>();
+        this.asyncScheduled = new AtomicBoolean(false);
+        this.asyncDrain = new Runnable() {
+            @Override
+            public void run() {
+                drainAsyncQueue();
+            }
+        };
+    }
+
+    public void post(Object event) {
+        // a plugin host hands every event to its parent as well
+        MethodHandle forwarder = this.forwarder;
+        if (forwarder != null) {
+            try {
+                forwarder.invokeExact(event);
+            } catch (Throwable print) {
+                this.logger.log(LogLevel.ERROR, null, (String) null, "Event not forwarded", event.getClass().getName(), print);
+            }
+        }
+
+        // fetch the dispatcher
+        Subscriber[] handlers = this.dispatchers.get(event.getClass());
+        if (handlers == null) {
+            handlers = this.createDispatcher(event.getClass());
+        }
+
+        // metering costs more than most handlers, so it is off unless asked for
+        if (this.metered) {
+            this.postMetered(event, handlers);
+            return;
+        }
+
+        // call every handler
+        for (Subscriber handler : handlers) {
+            try {
+                handler.handler.invokeExact(event);
+            } catch (Throwable print) {
+                this.logger.log(LogLevel.ERROR, null, handler.owner, "Event handler failed", event.getClass().getName(), print);
+            }
+        }
+    }
+
+    private void postMetered(Object event, Subscriber[] handlers) {
+        // call every handler and account its usage to the owner
+        for (Subscriber handler : handlers) {
+            long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+            try {
+                handler.handler.invokeExact(event);
+            } catch (Throwable print) {
+                this.logger.log(LogLevel.ERROR, null, handler.owner, "Event handler failed", event.getClass().getName(), print);
+            }
+            handler.owner.account(cpuStart, allocationStart);
+        }
+    }
+
+    public void postAsync(Object event) {
+        // queue the event and schedule a batch, if there is none
+        this.asyncQueue.add(event);
+        if (this.asyncScheduled.compareAndSet(false, true)) {
+            this.getExecutor().execute(this.asyncDrain);
+        }
+    }
+
+    private void drainAsyncQueue() {
+        do {
+            // post all queued events in one batch
+            Object event;
+            while ((event = this.asyncQueue.poll()) != null) {
+                this.post(event);
+            }
+            this.asyncScheduled.set(false);
+
+            // events may have been queued after the last poll
+        } while (!this.asyncQueue.isEmpty() && this.asyncScheduled.compareAndSet(false, true));
+    }
+
+    private Subscriber[] createDispatcher(Class<?> eventClass) {
+        // collect the handlers for this event, including handlers for supertypes
+        ConcurrentHashMap<Class<?>, Subscriber[]> map = this.dispatchers;
+        List<Subscriber> list = new ArrayList<Subscriber>();
+        for (Subscriber subscriber : this.subscribers) {
+            if (subscriber.eventType.isAssignableFrom(eventClass)) {
+                list.add(subscriber);
+            }
+        }
+
+        // order by priority, the order of registration is kept
+        Collections.sort(list, new Comparator<Subscriber>() {
+            @Override
+            public int compare(Subscriber first, Subscriber second) {
+                return first.priority.compareTo(second.priority);
+            }
+        });
+
+        Subscriber[] handlers = NO_HANDLERS;
+        if (!list.isEmpty()) {
+            handlers = list.toArray(new Subscriber[list.size()]);
+        }
+        map.put(eventClass, handlers);
+        return handlers;
+    }
+
+    protected synchronized void register(PluginDefinition owner) {
+        this.replace(null, owner);
+    }
+
+    protected synchronized void register(PluginDefinition owner, Class<?>[] eventTypes, Priority[] priorities, MethodHandle forwarder) {
+        // subscriptions of a plugin in another JVM, every event goes to the forwarder
+        List<Subscriber> list = new ArrayList<Subscriber>(Arrays.asList(this.subscribers));
+        MethodHandle handler = forwarder.asType(MethodType.methodType(void.class, Object.class));
+        for (int index = 0; index < eventTypes.length; index++) {
+            list.add(new Subscriber(owner, eventTypes[index], priorities[index], handler));
+        }
+
+        // publish the new subscribers and drop all dispatchers
+        this.subscribers = list.toArray(new Subscriber[list.size()]);
+        this.dispatchers = new ConcurrentHashMap<Class<?>, Subscriber[]>();
+    }
+
+    protected void setForwarder(MethodHandle forwarder) {
+        this.forwarder = forwarder != null ? forwarder.asType(MethodType.methodType(void.class, Object.class)) : null;
+    }
+
+    protected synchronized void unregister(PluginDefinition owner) {
+        this.replace(owner, null);
+    }
+
+    protected synchronized void replace(PluginDefinition oldOwner, PluginDefinition newOwner) {
+        // copy all other subscribers
+        List<Subscriber> list = new ArrayList<Subscriber>();
+        for (Subscriber subscriber : this.subscribers) {
+            if (subscriber.owner != oldOwner && subscriber.owner != newOwner) {
+                list.add(subscriber);
+            }
+        }
+        if (newOwner != null) {
+            Collections.addAll(list, newOwner.getEventSubscribers());
+        }
+
+        // publish the new subscribers and drop all dispatchers
+        this.subscribers = list.toArray(new Subscriber[list.size()]);
+        this.dispatchers = new ConcurrentHashMap<Class<?>, Subscriber[]>();
+    }
+
+    private synchronized Executor getExecutor() {
+        if (this.executor == null) {
+            this.executor = createDefaultExecutor();
+        }
+        return this.executor;
+    }
+
+    protected synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    protected void setMetered(boolean metered) {
+        this.metered = metered;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PluginManager-EventBus");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    protected static class Subscriber {
+
+        private final PluginDefinition owner;
+        private final Class<?> eventType;
+        private final Priority priority;
+        private final MethodHandle handler;
+
+        protected Subscriber(PluginDefinition owner, Class<?> eventType, Priority priority, MethodHandle handler) {
+            this.owner = owner;
+            this.eventType = eventType;
+            this.priority = priority;
+            this.handler = handler;
+        }
+
+        protected Class<?> getEventType() {
+            return this.eventType;
+        }
+
+        protected Priority getPriority() {
+            return this.priority;
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.units.Priority;
+
+public class ExtensionIndex {
+
+    private static final Comparator<ExtensionEntry> BY_PRIORITY = new Comparator<ExtensionEntry>() {
+        @Override
+        public int compare(ExtensionEntry first, ExtensionEntry second) {
+            return first.priority.compareTo(second.priority);
+        }
+    };
+
+    private final PluginLogger logger;
+    private final ConcurrentHashMap<String, List<ExtensionEntry>> entries;
+    private final HashMap<File, Set<String>> interfaceNames;
+    private final ConcurrentHashMap<Class<?>, List<?>> extensions;
+
+    protected ExtensionIndex(PluginLogger logger) {
+        this.logger = logger;
+        this.entries = new ConcurrentHashMap<String, List<ExtensionEntry>>();
+        this.interfaceNames = new HashMap<File, Set<String>>();
+        this.extensions = new ConcurrentHashMap<Class<?>, List<?>>();
+    }
+
+    protected synchronized void register(File source, ClassLoader classLoader, String className, String[] interfaces, Priority priority) {
+        // only the names are recorded, the class is loaded on the first lookup
+        ExtensionEntry entry = new ExtensionEntry(source, classLoader, className, priority);
+        Set<String> registered = this.interfaceNames.get(source);
+        if (registered == null) {
+            registered = new HashSet<String>();
+            this.interfaceNames.put(source, registered);
+        }
+        for (String interfaceName : interfaces) {
+            registered.add(interfaceName);
+            List<ExtensionEntry> list = new ArrayList<ExtensionEntry>();
+            List<ExtensionEntry> oldList = this.entries.get(interfaceName);
+            if (oldList != null) {
+                list.addAll(oldList);
+            }
+            list.add(entry);
+            this.entries.put(interfaceName, Collections.unmodifiableList(list));
+        }
+        this.extensions.clear();
+    }
+
+    protected synchronized void unregisterAll(File source) {
+        // only the interfaces of the source are visited
+        Set<String> registered = this.interfaceNames.remove(source);
+        if (registered == null) {
+            return;
+        }
+        for (String interfaceName : registered) {
+            // keep all entries of other sources
+            List<ExtensionEntry> oldList = this.entries.get(interfaceName);
+            if (oldList == null) {
+                continue;
+            }
+            List<ExtensionEntry> list = new ArrayList<ExtensionEntry>(oldList.size());
+            for (ExtensionEntry entry : oldList) {
+                if (!entry.source.equals(source)) {
+                    list.add(entry);
+                }
+            }
+            if (list.isEmpty()) {
+                this.entries.remove(interfaceName);
+            } else if (list.size() != oldList.size()) {
+                this.entries.put(interfaceName, Collections.unmodifiableList(list));
+            }
+        }
+        this.extensions.clear();
+    }
+
+    protected synchronized void clear() {
+        this.entries.clear();
+        this.interfaceNames.clear();
+        this.extensions.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> List<T> getExtensions(Class<T> type) {
+        // computed once, until a source is reloaded
+        List<?> cached = this.extensions.get(type);
+        if (cached != null) {
+            return (List<T>) cached;
+        }
+        synchronized (this) {
+            cached = this.extensions.get(type);
+            if (cached == null) {
+                cached = this.createExtensions(type);
+                this.extensions.put(type, cached);
+            }
+            return (List<T>) cached;
+        }
+    }
+
+    private <T> List<T> createExtensions(Class<T> type) {
+        List<ExtensionEntry> list = this.entries.get(type.getName());
+        if (list == null) {
+            return Collections.emptyList();
+        }
+
+        // sort by priority, the registration order is kept for equal priorities
+        List<ExtensionEntry> sorted = new ArrayList<ExtensionEntry>(list);
+        Collections.sort(sorted, BY_PRIORITY);
+
+        // load and instantiate
+        List<T> result = new ArrayList<T>(sorted.size());
+        for (ExtensionEntry entry : sorted) {
+            try {
+                Class<?> clazz = Class.forName(entry.className, true, entry.classLoader);
+                if (!type.isAssignableFrom(clazz)) {
+                    throw new ClassCastException("Extension '" + entry.className + "' doesn't implement '" + type.getName() + "'!");
+                }
+                result.add(type.cast(clazz.newInstance()));
+            } catch (Exception print) {
+                this.logger.log(LogLevel.ERROR, LifecycleStage.ENABLING, (String) null, "Extension not created", entry.className, print);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static class ExtensionEntry {
+
+        private final File source;
+        private final ClassLoader classLoader;
+        private final String className;
+        private final Priority priority;
+
+        private ExtensionEntry(File source, ClassLoader classLoader, String className, Priority priority) {
+            this.source = source;
+            this.classLoader = classLoader;
+            this.className = className;
+            this.priority = priority;
+        }
+    }
+
+}
@@ -1,33 +1,89 @@
-/**
- * The MIT License (MIT)
- * 
- * Copyright (c) 2014 Minestar.de
- * 
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- * 
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-package de.minestar.library.plugin;
-
-public abstract class ExternalPlugin {
-
-    private PluginManager pluginManager;
-
-    protected PluginManager getPluginManager() {
-        return pluginManager;
-    }
-}
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.minestar.library.plugin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+public abstract class ExternalPlugin {
+
+    private PluginManager pluginManager;
+    private PluginDefinition pluginDefinition;
+
+    protected PluginManager getPluginManager() {
+        return pluginManager;
+    }
+
+    protected <S> void registerService(Class<S> service, S implementation, int rank) {
+        // services are unregistered, when the plugin is disabled
+        this.pluginManager.getServiceRegistry().register(this.pluginDefinition, service, implementation, rank);
+    }
+
+    protected byte[] getResource(String name) throws IOException {
+        // resources of the own JAR are preferred
+        return this.pluginManager.getResourceIndex().getResource(name, this.pluginDefinition.getPluginFile());
+    }
+
+    protected ScheduledTask scheduleTask(Runnable task, long delay, TimeUnit unit) {
+        // tasks are cancelled, when the plugin is disabled
+        return this.pluginManager.getTaskScheduler().schedule(this.pluginDefinition, task, delay, 0, unit);
+    }
+
+    protected ScheduledTask scheduleTask(Runnable task, long delay, long period, TimeUnit unit) {
+        return this.pluginManager.getTaskScheduler().schedule(this.pluginDefinition, task, delay, period, unit);
+    }
+
+    protected <K, V> PluginCache<K, V> createCache(String name, long maxSize) {
+        // caches are dropped, when the plugin is disabled, so they belong in a postEnable-method
+        return this.pluginDefinition.createCache(name, maxSize, null, 0, TimeUnit.NANOSECONDS);
+    }
+
+    protected <K, V> PluginCache<K, V> createCache(String name, long maxWeight, PluginCache.Weigher<? super K, ? super V> weigher, long expireAfterWrite, TimeUnit unit) {
+        return this.pluginDefinition.createCache(name, maxWeight, weigher, expireAfterWrite, unit);
+    }
+
+    protected ByteBuffer createCheckpoint(int stateVersion, long size) throws IOException {
+        // the checkpoint is committed after the preDisable-methods
+        return this.pluginManager.getCheckpointStore().create(this.pluginDefinition, stateVersion, size);
+    }
+
+    protected ByteBuffer openCheckpoint(int stateVersion) {
+        // null, if there is no checkpoint with this state version
+        return this.pluginManager.getCheckpointStore().open(this.pluginDefinition, stateVersion);
+    }
+
+    protected boolean deleteCheckpoint() {
+        return this.pluginManager.getCheckpointStore().delete(this.pluginDefinition);
+    }
+
+    protected Object exportState() {
+        // called on the old instance, when the plugin is swapped
+        return null;
+    }
+
+    protected void importState(Object state) {
+        // called on the new instance, before its postEnable-methods
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.minestar.library.plugin.flow.OverflowPolicy;
+import de.minestar.library.plugin.flow.Publisher;
+import de.minestar.library.plugin.flow.Subscriber;
+import de.minestar.library.plugin.logging.LifecycleEvent;
+import de.minestar.library.plugin.logging.LifecycleStage;
+
+public class LifecyclePublisher implements Publisher<LifecycleEvent> {
+
+    private static final LifecycleSubscription[] NO_SUBSCRIPTIONS = new LifecycleSubscription[0];
+
+    private volatile LifecycleSubscription[] subscriptions;
+    private volatile boolean starting;
+    private final PluginLogger logger;
+    private List<LifecycleEvent> lastStart;
+    private boolean completed;
+    private Executor executor;
+
+    protected LifecyclePublisher(PluginLogger logger) {
+        this.logger = logger;
+        this.subscriptions = NO_SUBSCRIPTIONS;
+        this.lastStart = new ArrayList<LifecycleEvent>();
+        this.starting = true;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super LifecycleEvent> subscriber) {
+        this.subscribe(subscriber, 256, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public LifecycleSubscription subscribe(Subscriber<? super LifecycleEvent> subscriber, int bufferSize, OverflowPolicy overflowPolicy) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The buffer size must be positive!");
+        }
+        LifecycleSubscription subscription = new LifecycleSubscription(this, subscriber, bufferSize, overflowPolicy);
+        subscriber.onSubscribe(subscription);
+        if (!subscription.isCancelled()) {
+            synchronized (this) {
+                // the last start is replayed, the manager publishes it before anyone can subscribe
+                for (LifecycleEvent event : this.lastStart) {
+                    subscription.offer(event);
+                }
+                if (this.completed) {
+                    subscription.complete();
+                } else {
+                    List<LifecycleSubscription> list = new ArrayList<LifecycleSubscription>(Arrays.asList(this.subscriptions));
+                    list.add(subscription);
+                    this.subscriptions = list.toArray(new LifecycleSubscription[list.size()]);
+                }
+            }
+        }
+        return subscription;
+    }
+
+    protected synchronized void remove(LifecycleSubscription subscription) {
+        List<LifecycleSubscription> list = new ArrayList<LifecycleSubscription>(Arrays.asList(this.subscriptions));
+        if (list.remove(subscription)) {
+            this.subscriptions = list.isEmpty() ? NO_SUBSCRIPTIONS : list.toArray(new LifecycleSubscription[list.size()]);
+        }
+    }
+
+    protected void publish(LifecycleStage stage, PluginDefinition pluginDefinition, long start, String message, Throwable cause) {
+        this.publish(stage, pluginDefinition.getName(), pluginDefinition.getVersion(), start, message, cause);
+    }
+
+    protected void publish(LifecycleStage stage, String pluginName, String pluginVersion, long start, String message, Throwable cause) {
+        // nothing is created without subscribers, unless a start is recorded
+        LifecycleSubscription[] current = this.subscriptions;
+        if (current.length == 0 && !this.starting) {
+            return;
+        }
+        LifecycleEvent event = new LifecycleEvent(System.currentTimeMillis(), System.nanoTime() - start, stage, pluginName, pluginVersion, message, cause);
+        synchronized (this) {
+            if (this.starting) {
+                this.lastStart.add(event);
+            }
+            current = this.subscriptions;
+        }
+        for (LifecycleSubscription subscription : current) {
+            subscription.offer(event);
+        }
+    }
+
+    protected synchronized void beginStart() {
+        this.lastStart = new ArrayList<LifecycleEvent>();
+        this.starting = true;
+    }
+
+    protected synchronized void endStart() {
+        this.starting = false;
+    }
+
+    protected void complete() {
+        // subscribers get onComplete once their buffered events are delivered
+        LifecycleSubscription[] current;
+        synchronized (this) {
+            this.starting = false;
+            this.completed = true;
+            current = this.subscriptions;
+            this.subscriptions = NO_SUBSCRIPTIONS;
+        }
+        for (LifecycleSubscription subscription : current) {
+            subscription.complete();
+        }
+    }
+
+    public synchronized List<LifecycleEvent> getLastStart() {
+        return new ArrayList<LifecycleEvent>(this.lastStart);
+    }
+
+    public List<LifecycleSubscription> getSubscriptions() {
+        return Arrays.asList(this.subscriptions.clone());
+    }
+
+    protected PluginLogger getLogger() {
+        return this.logger;
+    }
+
+    protected synchronized Executor getExecutor() {
+        if (this.executor == null) {
+            this.executor = createDefaultExecutor();
+        }
+        return this.executor;
+    }
+
+    protected synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        // a blocked subscriber must not hold back the others
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PluginManager-Lifecycle");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
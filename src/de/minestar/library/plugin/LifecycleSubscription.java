@@ -0,0 +1,216 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.minestar.library.plugin.exceptions.SubscriberOverflowException;
+import de.minestar.library.plugin.flow.OverflowPolicy;
+import de.minestar.library.plugin.flow.Subscriber;
+import de.minestar.library.plugin.flow.Subscription;
+import de.minestar.library.plugin.logging.LifecycleEvent;
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class LifecycleSubscription implements Subscription {
+
+    private final LifecyclePublisher publisher;
+    private final Subscriber<? super LifecycleEvent> subscriber;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final ArrayDeque<LifecycleEvent> buffer;
+    private final AtomicInteger wip;
+    private final AtomicLong droppedEvents;
+    private final Runnable drain;
+    private long demand;
+    private Throwable failure;
+    private boolean completed;
+    private volatile boolean cancelled;
+
+    protected LifecycleSubscription(LifecyclePublisher publisher, Subscriber<? super LifecycleEvent> subscriber, int bufferSize, OverflowPolicy overflowPolicy) {
+        this.publisher = publisher;
+        this.subscriber = subscriber;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.buffer = new ArrayDeque<LifecycleEvent>(Math.min(bufferSize, 64));
+        this.wip = new AtomicInteger();
+        this.droppedEvents = new AtomicLong();
+        this.drain = new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+    }
+
+    protected void offer(LifecycleEvent event) {
+        // never blocks, a full buffer applies the overflow policy
+        boolean dropped = false;
+        synchronized (this) {
+            if (this.cancelled || this.completed || this.failure != null) {
+                return;
+            }
+            if (this.buffer.size() < this.bufferSize) {
+                this.buffer.add(event);
+            } else if (this.overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                this.buffer.poll();
+                this.buffer.add(event);
+                dropped = true;
+            } else if (this.overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                dropped = true;
+            } else {
+                this.failure = new SubscriberOverflowException("The subscriber didn't keep up with " + this.bufferSize + " buffered events!");
+            }
+        }
+        if (dropped && this.droppedEvents.getAndIncrement() == 0) {
+            this.publisher.getLogger().log(LogLevel.WARNING, event.getStage(), event.getPluginName(), "Lifecycle subscriber is too slow, events are dropped", this.subscriber, null);
+        }
+        this.schedule();
+    }
+
+    @Override
+    public void request(long n) {
+        synchronized (this) {
+            if (this.cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                this.failure = new IllegalArgumentException("The demand must be positive!");
+            } else {
+                // saturate at Long.MAX_VALUE, which means unbounded
+                this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+            }
+        }
+        this.schedule();
+    }
+
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+        this.publisher.remove(this);
+        synchronized (this) {
+            this.buffer.clear();
+        }
+    }
+
+    protected void complete() {
+        synchronized (this) {
+            if (this.cancelled || this.completed) {
+                return;
+            }
+            this.completed = true;
+        }
+        this.schedule();
+    }
+
+    private void schedule() {
+        // only one drain per subscription runs at a time
+        if (this.wip.getAndIncrement() == 0) {
+            Executor executor = this.publisher.getExecutor();
+            try {
+                executor.execute(this.drain);
+            } catch (RuntimeException print) {
+                this.wip.set(0);
+                this.publisher.getLogger().log(LogLevel.ERROR, (LifecycleStage) null, (String) null, "Lifecycle events not delivered", this.subscriber, print);
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            while (!this.cancelled) {
+                LifecycleEvent event;
+                Throwable error = null;
+                boolean complete = false;
+                synchronized (this) {
+                    if (this.failure != null) {
+                        error = this.failure;
+                        event = null;
+                    } else if (this.completed && this.buffer.isEmpty()) {
+                        complete = true;
+                        event = null;
+                    } else if (this.demand == 0 || (event = this.buffer.poll()) == null) {
+                        break;
+                    } else if (this.demand != Long.MAX_VALUE) {
+                        this.demand--;
+                    }
+                }
+
+                // failures end the subscription
+                if (error != null) {
+                    this.cancel();
+                    this.subscriber.onError(error);
+                    return;
+                }
+
+                // completion follows the last buffered event
+                if (complete) {
+                    this.cancel();
+                    try {
+                        this.subscriber.onComplete();
+                    } catch (RuntimeException print) {
+                        this.publisher.getLogger().log(LogLevel.ERROR, (LifecycleStage) null, (String) null, "Lifecycle subscriber failed", this.subscriber, print);
+                    }
+                    return;
+                }
+
+                // the subscriber is called outside of the lock
+                try {
+                    this.subscriber.onNext(event);
+                } catch (RuntimeException print) {
+                    this.cancel();
+                    this.publisher.getLogger().log(LogLevel.ERROR, event.getStage(), event.getPluginName(), "Lifecycle subscriber failed", this.subscriber, print);
+                    return;
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public synchronized int getBufferedEvents() {
+        return this.buffer.size();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    public long getDroppedEvents() {
+        return this.droppedEvents.get();
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.minestar.library.plugin.units.CacheStats;
+
+public class PluginCache<K, V> {
+
+    public static interface Weigher<K, V> {
+
+        public long weigh(K key, V value);
+    }
+
+    // rough heap size of an entry, for caches that are bounded by memory
+    // unknown objects count with their header only, nested objects aren't followed
+    public static final Weigher<Object, Object> ESTIMATED_BYTES = new Weigher<Object, Object>() {
+        @Override
+        public long weigh(Object key, Object value) {
+            return ENTRY_OVERHEAD + estimate(key) + estimate(value);
+        }
+    };
+
+    // map node, cache entry and their references
+    private static final long ENTRY_OVERHEAD = 80;
+
+    private final String name;
+    private final long maxWeight, expireAfterWrite;
+    private final Weigher<? super K, ? super V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long weight, hits, misses, evictions, expirations;
+
+    protected PluginCache(String name, long maxWeight, Weigher<? super K, ? super V> weigher, long expireAfterWrite, TimeUnit unit) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("The maximum weight must be positive!");
+        }
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        // 0 disables the expiry
+        this.expireAfterWrite = unit.toNanos(expireAfterWrite);
+        // access order, the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        if (this.isExpired(entry, System.nanoTime())) {
+            this.remove(key);
+            this.expirations++;
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return entry.value;
+    }
+
+    public synchronized V put(K key, V value) {
+        // entries heavier than the whole cache are not stored
+        long entryWeight = this.weigher != null ? this.weigher.weigh(key, value) : 1;
+        if (entryWeight < 0) {
+            throw new IllegalArgumentException("The weight must not be negative!");
+        }
+        V previous = this.remove(key);
+        if (entryWeight > this.maxWeight) {
+            this.evictions++;
+            return previous;
+        }
+        this.entries.put(key, new Entry<V>(value, entryWeight, System.nanoTime()));
+        this.weight += entryWeight;
+        this.evict();
+        return previous;
+    }
+
+    public synchronized V invalidate(K key) {
+        return this.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return this.weight;
+    }
+
+    public synchronized long estimateBytes() {
+        // independent of the weigher, the weight may count anything
+        long bytes = 0;
+        for (Map.Entry<K, Entry<V>> entry : this.entries.entrySet()) {
+            bytes += ESTIMATED_BYTES.weigh(entry.getKey(), entry.getValue().value);
+        }
+        return bytes;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(this.name, this.hits, this.misses, this.evictions, this.expirations, this.entries.size(), this.weight, this.maxWeight);
+    }
+
+    private V remove(K key) {
+        Entry<V> entry = this.entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        this.weight -= entry.weight;
+        return entry.value;
+    }
+
+    private void evict() {
+        // least recently used entries first
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = this.entries.entrySet().iterator();
+        while (this.weight > this.maxWeight && iterator.hasNext()) {
+            Entry<V> entry = iterator.next().getValue();
+            this.weight -= entry.weight;
+            iterator.remove();
+            if (this.isExpired(entry, now)) {
+                this.expirations++;
+            } else {
+                this.evictions++;
+            }
+        }
+    }
+
+    private static long estimate(Object object) {
+        if (object == null) {
+            return 0;
+        } else if (object instanceof byte[]) {
+            return 16 + ((byte[]) object).length;
+        } else if (object instanceof char[]) {
+            return 16 + 2L * ((char[]) object).length;
+        } else if (object instanceof int[]) {
+            return 16 + 4L * ((int[]) object).length;
+        } else if (object instanceof long[]) {
+            return 16 + 8L * ((long[]) object).length;
+        } else if (object instanceof Object[]) {
+            return 16 + 4L * ((Object[]) object).length;
+        } else if (object instanceof CharSequence) {
+            // object and backing array
+            return 40 + 2L * ((CharSequence) object).length();
+        } else if (object instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) object;
+            return 48 + (buffer.isDirect() ? 0 : buffer.capacity());
+        } else if (object instanceof Long || object instanceof Double) {
+            return 24;
+        }
+        return 16;
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return this.expireAfterWrite > 0 && now - entry.written >= this.expireAfterWrite;
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long weight, written;
+
+        private Entry(V value, long weight, long written) {
+            this.value = value;
+            this.weight = weight;
+            this.written = written;
+        }
+    }
+
+}
@@ -1,314 +1,706 @@
-/**
- * The MIT License (MIT)
- * 
- * Copyright (c) 2014 Minestar.de
- * 
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- * 
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-
-package de.minestar.library.plugin;
-
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
-import de.minestar.library.plugin.annotations.CallMethod;
-import de.minestar.library.plugin.annotations.Plugin;
-import de.minestar.library.plugin.annotations.PostEnable;
-import de.minestar.library.plugin.annotations.PreDisable;
-import de.minestar.library.plugin.exceptions.CircularDependencyException;
-import de.minestar.library.plugin.exceptions.MissingDependencyException;
-import de.minestar.library.plugin.exceptions.PluginCreationFailedException;
-import de.minestar.library.plugin.units.MethodCall;
-import de.minestar.library.plugin.units.Priority;
-
-public class PluginDefinition {
-
-    private final PluginManager pluginManager;
-    private boolean enabled;
-    private ExternalPlugin instance;
-    private final String name, version;
-    private final String[] dependencies;
-    private final List<PluginDefinition> dependingPlugins;
-    private final Map<Priority, List<Method>> postEnableMap, preDisableMap;
-    private final Map<Integer, List<MethodCall>> afterInitializationMap;
-
-    protected static PluginDefinition createPlugin(PluginManager pluginManager, Class<? extends ExternalPlugin> clazz) {
-        try {
-            return new PluginDefinition(pluginManager, clazz);
-        } catch (PluginCreationFailedException print) {
-            print.getOriginalException().printStackTrace();
-        }
-        return null;
-    }
-
-    private PluginDefinition(PluginManager pluginManager, Class<? extends ExternalPlugin> clazz) throws PluginCreationFailedException {
-        try {
-            this.instance = (ExternalPlugin) clazz.newInstance();
-            this.pluginManager = pluginManager;
-            this.name = this.fetchPluginName();
-            this.version = this.fetchPluginVersion();
-            this.dependencies = this.fetchDependencies();
-            this.postEnableMap = this.fetchMethods(PostEnable.class);
-            this.preDisableMap = this.fetchMethods(PreDisable.class);
-            this.afterInitializationMap = this.fetchCallMethods();
-            this.dependingPlugins = new ArrayList<PluginDefinition>();
-            this.enabled = false;
-            this.setPluginManager();
-        } catch (Exception originalException) {
-            throw new PluginCreationFailedException("Could not create plugin '" + clazz.getSimpleName() + "'!", originalException);
-        }
-    }
-
-    private void setPluginManager() throws NoSuchFieldException, IllegalAccessException {
-        // get the field
-        Field field = ExternalPlugin.class.getDeclaredField("pluginManager");
-        // set field accessible
-        field.setAccessible(true);
-        // update the value
-        field.set(this.instance, this.pluginManager);
-        // set field unaccessible
-        field.setAccessible(false);
-    }
-
-    private Map<Integer, List<MethodCall>> fetchCallMethods() {
-        // create new map
-        Map<Integer, List<MethodCall>> map = new HashMap<Integer, List<MethodCall>>();
-
-        // fetch methods
-        Method[] methods = this.instance.getClass().getDeclaredMethods();
-        Annotation[] annotations;
-        for (Method method : methods) {
-            // fetch annotations
-            annotations = method.getDeclaredAnnotations();
-            for (Annotation annotation : annotations) {
-                // if the class is the same, append the method
-                if (annotation instanceof CallMethod) {
-                    // append the method
-                    CallMethod callMethod = (CallMethod) annotation;
-                    if (!map.containsKey(callMethod.priority())) {
-                        map.put(callMethod.priority(), new ArrayList<MethodCall>());
-                    }
-                    map.get(callMethod.priority()).add(new MethodCall(this.instance, method, callMethod));
-                }
-            }
-        }
-
-        // return unmodifiable map
-        return Collections.unmodifiableMap(map);
-    }
-
-    protected void afterInitializationCalls() {
-        try {
-            for (List<MethodCall> list : this.afterInitializationMap.values()) {
-                for (MethodCall methodCall : list) {
-                    methodCall.invoke();
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private String fetchPluginName() {
-        return this.instance.getClass().getSimpleName();
-    }
-
-    private String fetchPluginVersion() {
-        // fetch annotations
-        Annotation[] annotations = this.instance.getClass().getDeclaredAnnotations();
-        for (Annotation annotation : annotations) {
-            // if the class is "Plugin", return the version
-            if (annotation instanceof Plugin) {
-                Plugin plugin = (Plugin) annotation;
-                return plugin.version();
-            }
-        }
-        return "UNKNOWN";
-    }
-
-    private String[] fetchDependencies() {
-        // fetch annotations
-        Annotation[] annotations = this.instance.getClass().getDeclaredAnnotations();
-        for (Annotation annotation : annotations) {
-            // if the class is "Plugin", return the harddependencies
-            if (annotation instanceof Plugin) {
-                Plugin plugin = (Plugin) annotation;
-                return plugin.dependencies();
-            }
-        }
-        return new String[0];
-    }
-
-    private Map<Priority, List<Method>> fetchMethods(Class<?> clazz) {
-        // create new map
-        Map<Priority, List<Method>> map = new TreeMap<Priority, List<Method>>();
-
-        // fetch methods
-        Method[] methods = this.instance.getClass().getDeclaredMethods();
-        Annotation[] annotations;
-        for (Method method : methods) {
-            // arguments are not allowed
-            if (method.getParameterTypes().length > 0) {
-                continue;
-            }
-
-            // fetch annotations
-            annotations = method.getDeclaredAnnotations();
-            for (Annotation annotation : annotations) {
-                // if the class is the same, append the method
-                if (clazz.isAssignableFrom(annotation.getClass())) {
-
-                    // fetch priority
-                    Priority priority = Priority.THIRD_MOST;
-                    if (PostEnable.class.isAssignableFrom(annotation.getClass())) {
-                        PostEnable onEnable = (PostEnable) annotation;
-                        priority = onEnable.priority();
-                    } else if (PreDisable.class.isAssignableFrom(annotation.getClass())) {
-                        PreDisable onDisable = (PreDisable) annotation;
-                        priority = onDisable.priority();
-                    }
-
-                    // create arrayList, if there isn't one
-                    if (!map.containsKey(priority)) {
-                        map.put(priority, new ArrayList<Method>());
-                    }
-
-                    // set accessible
-                    method.setAccessible(true);
-
-                    // append the method
-                    map.get(priority).add(method);
-                }
-            }
-        }
-
-        // return an unmodifiable map
-        return Collections.unmodifiableMap(map);
-    }
-
-    private void callMethods(Map<Priority, List<Method>> map) {
-        // iterate...
-        for (List<Method> list : map.values()) {
-            // for every method in the list...
-            for (Method method : list) {
-                try {
-                    // try to invoke the method
-                    method.invoke(this.instance);
-                } catch (Exception print) {
-                    print.printStackTrace();
-                }
-            }
-        }
-    }
-
-    protected void updateDependencies() throws MissingDependencyException {
-        // clear list
-        this.dependingPlugins.clear();
-
-        // iterate and search plugins
-        for (String dependency : this.dependencies) {
-            PluginDefinition plugin = this.pluginManager.getLoadedPlugin(dependency);
-            if (plugin == null) {
-                throw new MissingDependencyException("Plugin '" + this.name + "' is missing depending plugin '" + dependency + "'. Plugin will be ignored!", this, dependency);
-            } else {
-                this.dependingPlugins.add(plugin);
-            }
-        }
-    }
-
-    protected void checkForCircularDependencies(PluginDefinition father, List<PluginDefinition> list) throws CircularDependencyException {
-        // check, if we are already in the set
-        if (list.contains(this)) {
-            throw new CircularDependencyException("Circular dependency between '" + this.getName() + "' and '" + father.getName() + "' found. Both plugins will be ignored!", this, father);
-        }
-
-        // add this "AbstractPlugin"
-        list.add(this);
-
-        // recursive call
-        for (PluginDefinition plugin : this.dependingPlugins) {
-            plugin.checkForCircularDependencies(this, list);
-        }
-    }
-
-    protected boolean enable() {
-        if (!this.enabled) {
-            this.enabled = true;
-            return true;
-        }
-        return false;
-    }
-
-    protected boolean disable() {
-        if (this.enabled) {
-            this.enabled = false;
-            return true;
-        }
-        return false;
-    }
-
-    protected boolean callPostEnableMethods() {
-        if (this.enabled) {
-            // call postEnable-Methods
-            this.callMethods(this.postEnableMap);
-            return true;
-        }
-        return false;
-    }
-
-    protected boolean callPreDisableMethods() {
-        if (this.enabled) {
-            // call preDisable-Methods
-            this.callMethods(this.preDisableMap);
-            return true;
-        }
-        return false;
-    }
-
-    @SuppressWarnings("unchecked")
-    protected <T> T getInstance(Class<? extends ExternalPlugin> clazz) {
-        return (T) instance;
-    }
-
-    // //////////////////////////////////////////////////////////////////////////////////////
-    //
-    // GET & SET
-    //
-    // //////////////////////////////////////////////////////////////////////////////////////
-
-    protected String getName() {
-        return this.name;
-    }
-
-    protected String getVersion() {
-        return this.version;
-    }
-
-    protected boolean isEnabled() {
-        return this.enabled;
-    }
-
-}
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.minestar.library.plugin.annotations.CallMethod;
+import de.minestar.library.plugin.annotations.EventHandler;
+import de.minestar.library.plugin.annotations.InjectPlugin;
+import de.minestar.library.plugin.annotations.Plugin;
+import de.minestar.library.plugin.annotations.PostEnable;
+import de.minestar.library.plugin.annotations.PreDisable;
+import de.minestar.library.plugin.annotations.Warmup;
+import de.minestar.library.plugin.exceptions.PluginCreationFailedException;
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.units.CacheStats;
+import de.minestar.library.plugin.units.ClassInfo;
+import de.minestar.library.plugin.units.MethodCall;
+import de.minestar.library.plugin.units.PluginUsage;
+import de.minestar.library.plugin.units.Priority;
+import de.minestar.library.plugin.units.Version;
+import de.minestar.library.plugin.units.VersionRange;
+
+public class PluginDefinition {
+
+    private final PluginManager pluginManager;
+    private volatile boolean enabled, ready;
+    private boolean retired;
+    private int leases;
+    private volatile boolean valid;
+    private final AtomicLong cpuTime, allocatedBytes, invocations;
+    private volatile long enableCpuTime, enableAllocatedBytes;
+    private volatile boolean overBudget;
+    private ExternalPlugin instance;
+    private Class<? extends ExternalPlugin> pluginClass;
+    private final ClassLoader classLoader;
+    private final ClassInfo classInfo;
+    private final File pluginFile;
+    private final String name, version;
+    private final Version parsedVersion;
+    private final String[] dependencies;
+    private final VersionRange[] dependencyRanges;
+    private Method[] postEnableMethods = new Method[0], preDisableMethods = new Method[0], warmupMethods = new Method[0];
+    private MethodCall[] afterInitializationCalls = new MethodCall[0];
+    private MethodHandle[] injectionSetters = new MethodHandle[0];
+    private String[] injectionTargets = new String[0];
+    private boolean[] injectionHandles = new boolean[0];
+    private Class<?>[] injectionTypes = new Class<?>[0];
+    private EventBus.Subscriber[] eventSubscribers = new EventBus.Subscriber[0];
+    private final List<PluginCache<?, ?>> caches;
+    private String[] prefetchClasses = new String[0];
+
+    protected static PluginDefinition createPlugin(PluginManager pluginManager, ClassLoader classLoader, ClassInfo classInfo, File pluginFile) {
+        try {
+            return new PluginDefinition(pluginManager, classLoader, classInfo, pluginFile);
+        } catch (PluginCreationFailedException print) {
+            pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.FAILED, PluginManager.getSimpleName(classInfo.getName()), print.getMessage(), null, print.getOriginalException());
+        }
+        return null;
+    }
+
+    private PluginDefinition(PluginManager pluginManager, ClassLoader classLoader, ClassInfo classInfo, File pluginFile) throws PluginCreationFailedException {
+        // name, version and dependencies are read from the class file, the class is instantiated when it is enabled
+        try {
+            this.classLoader = classLoader;
+            this.classInfo = classInfo;
+            this.pluginFile = pluginFile;
+            this.pluginManager = pluginManager;
+            this.name = PluginManager.getSimpleName(classInfo.getName());
+            this.version = this.fetchPluginVersion();
+            this.parsedVersion = Version.parse(this.version);
+            String[] declarations = this.fetchDependencies();
+            this.dependencies = new String[declarations.length];
+            this.dependencyRanges = new VersionRange[declarations.length];
+            this.parseDependencies(declarations);
+            this.enabled = false;
+            this.cpuTime = new AtomicLong();
+            this.allocatedBytes = new AtomicLong();
+            this.invocations = new AtomicLong();
+            this.caches = new CopyOnWriteArrayList<PluginCache<?, ?>>();
+        } catch (Exception originalException) {
+            throw new PluginCreationFailedException("Could not create plugin '" + PluginManager.getSimpleName(classInfo.getName()) + "'!", originalException);
+        }
+    }
+
+    protected PluginDefinition copy() {
+        // same class, new instance
+        return createPlugin(this.pluginManager, this.classLoader, this.classInfo, this.pluginFile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void instantiate() throws PluginCreationFailedException {
+        try {
+            // load the class
+            Class<?> clazz = this.classLoader.loadClass(this.classInfo.getName());
+            if (!ExternalPlugin.class.isAssignableFrom(clazz)) {
+                throw new IllegalStateException("Class '" + clazz.getName() + "' doesn't extend ExternalPlugin!");
+            }
+
+            // create the instance and read the annotated members
+            this.instance = (ExternalPlugin) clazz.newInstance();
+            this.pluginClass = (Class<? extends ExternalPlugin>) clazz;
+            this.postEnableMethods = this.fetchMethods(PostEnable.class);
+            this.preDisableMethods = this.fetchMethods(PreDisable.class);
+            this.warmupMethods = this.fetchMethods(Warmup.class);
+            this.afterInitializationCalls = this.fetchCallMethods();
+            Field[] injectionFields = this.fetchInjectionFields();
+            this.injectionSetters = new MethodHandle[injectionFields.length];
+            this.injectionTargets = new String[injectionFields.length];
+            this.injectionHandles = new boolean[injectionFields.length];
+            this.injectionTypes = new Class<?>[injectionFields.length];
+            this.createInjectionPlan(injectionFields);
+            this.eventSubscribers = this.fetchEventSubscribers();
+            this.setPluginManager();
+            this.setPluginDefinition();
+        } catch (Exception originalException) {
+            this.instance = null;
+            this.injectionSetters = new MethodHandle[0];
+            this.injectionTargets = new String[0];
+            throw new PluginCreationFailedException("Could not create plugin '" + this.name + "'!", originalException);
+        }
+    }
+
+    private void setPluginManager() throws NoSuchFieldException, IllegalAccessException {
+        // get the field
+        Field field = ExternalPlugin.class.getDeclaredField("pluginManager");
+        // set field accessible
+        field.setAccessible(true);
+        // update the value
+        field.set(this.instance, this.pluginManager);
+        // set field unaccessible
+        field.setAccessible(false);
+    }
+
+    private void setPluginDefinition() throws NoSuchFieldException, IllegalAccessException {
+        // get the field
+        Field field = ExternalPlugin.class.getDeclaredField("pluginDefinition");
+        // set field accessible
+        field.setAccessible(true);
+        // update the value
+        field.set(this.instance, this);
+        // set field unaccessible
+        field.setAccessible(false);
+    }
+
+    private MethodCall[] fetchCallMethods() {
+        // create new map
+        Map<Integer, List<MethodCall>> map = new TreeMap<Integer, List<MethodCall>>();
+
+        // fetch methods
+        Method[] methods = this.instance.getClass().getDeclaredMethods();
+        Annotation[] annotations;
+        for (Method method : methods) {
+            // fetch annotations
+            annotations = method.getDeclaredAnnotations();
+            for (Annotation annotation : annotations) {
+                // if the class is the same, append the method
+                if (annotation instanceof CallMethod) {
+                    // append the method
+                    CallMethod callMethod = (CallMethod) annotation;
+                    if (!map.containsKey(callMethod.priority())) {
+                        map.put(callMethod.priority(), new ArrayList<MethodCall>());
+                    }
+                    map.get(callMethod.priority()).add(new MethodCall(this.instance, method, callMethod));
+                }
+            }
+        }
+
+        // flatten the map, ordered by priority
+        List<MethodCall> list = new ArrayList<MethodCall>();
+        for (List<MethodCall> priorityList : map.values()) {
+            list.addAll(priorityList);
+        }
+        return list.toArray(new MethodCall[list.size()]);
+    }
+
+    private EventBus.Subscriber[] fetchEventSubscribers() throws IllegalAccessException {
+        List<EventBus.Subscriber> list = new ArrayList<EventBus.Subscriber>();
+
+        // fetch methods
+        Method[] methods = this.instance.getClass().getDeclaredMethods();
+        for (Method method : methods) {
+            // the event is the only argument
+            EventHandler eventHandler = method.getAnnotation(EventHandler.class);
+            if (eventHandler == null || method.getParameterTypes().length != 1) {
+                continue;
+            }
+
+            // create the handle
+            method.setAccessible(true);
+            MethodHandle handler = MethodHandles.lookup().unreflect(method).bindTo(this.instance).asType(MethodType.methodType(void.class, Object.class));
+            list.add(new EventBus.Subscriber(this, method.getParameterTypes()[0], eventHandler.priority(), handler));
+        }
+        return list.toArray(new EventBus.Subscriber[list.size()]);
+    }
+
+    private Field[] fetchInjectionFields() {
+        // fetch fields
+        List<Field> list = new ArrayList<Field>();
+        for (Field field : this.instance.getClass().getDeclaredFields()) {
+            if (field.isAnnotationPresent(InjectPlugin.class)) {
+                list.add(field);
+            }
+        }
+        return list.toArray(new Field[list.size()]);
+    }
+
+    private void createInjectionPlan(Field[] fields) throws IllegalAccessException {
+        for (int index = 0; index < fields.length; index++) {
+            Field field = fields[index];
+            InjectPlugin injectPlugin = field.getAnnotation(InjectPlugin.class);
+
+            // handles need an explicit name, plugins are found by their type
+            boolean handle = PluginHandle.class.equals(field.getType());
+            String target = injectPlugin.value();
+            if (target.isEmpty()) {
+                if (handle) {
+                    throw new IllegalStateException("Field '" + field.getName() + "' in plugin '" + this.name + "' needs the name of the injected plugin!");
+                }
+                target = field.getType().getSimpleName();
+            }
+
+            // only declared dependencies can be injected
+            if (!Arrays.asList(this.dependencies).contains(target)) {
+                throw new IllegalStateException("Field '" + field.getName() + "' in plugin '" + this.name + "' injects '" + target + "', which is not a dependency!");
+            }
+
+            // create the setter
+            field.setAccessible(true);
+            this.injectionSetters[index] = MethodHandles.lookup().unreflectSetter(field);
+            this.injectionTargets[index] = target;
+            this.injectionHandles[index] = handle;
+            this.injectionTypes[index] = field.getType();
+        }
+    }
+
+    protected boolean injectDependencies() {
+        return this.injectDependencies(Collections.<String, PluginDefinition> emptyMap());
+    }
+
+    protected boolean injectDependencies(Map<String, PluginDefinition> staged) {
+        // staged plugins aren't enabled yet, but are injected instead of the enabled ones
+        boolean injected = true;
+        for (int index = 0; index < this.injectionSetters.length; index++) {
+            try {
+                if (this.injectionHandles[index]) {
+                    // handles can't point into another JVM
+                    if (this.pluginManager.isRemote(this.injectionTargets[index])) {
+                        throw new IllegalStateException("Plugin '" + this.injectionTargets[index] + "' runs in another JVM, only interfaces can be injected!");
+                    }
+                    this.injectionSetters[index].invoke(this.instance, this.pluginManager.getPluginHandle(this.injectionTargets[index]));
+                } else {
+                    PluginDefinition target = staged.get(this.injectionTargets[index]);
+                    if (target == null) {
+                        target = this.pluginManager.getEnabledPlugin(this.injectionTargets[index]);
+                    }
+                    Object value = target != null ? target.instance : this.pluginManager.getProxy(this.injectionTargets[index], this.injectionTypes[index]);
+                    this.injectionSetters[index].invoke(this.instance, value);
+                }
+            } catch (Throwable print) {
+                this.pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.ENABLING, this, "Plugin not injected", this.injectionTargets[index], print);
+                injected = false;
+            }
+        }
+        return injected;
+    }
+
+    protected Object invoke(String methodName, Class<?>[] parameterTypes, Object[] args) throws Throwable {
+        // calls from another JVM, by name and parameter types
+        Method method = this.instance.getClass().getMethod(methodName, parameterTypes);
+        long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+        try {
+            return method.invoke(this.instance, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            this.account(cpuStart, allocationStart);
+        }
+    }
+
+    protected boolean injects(String name) {
+        return Arrays.asList(this.injectionTargets).contains(name);
+    }
+
+    protected boolean hasWarmup() {
+        return this.warmupMethods.length > 0;
+    }
+
+    protected void warmUp() {
+        // call every warmup-method, until the iterations are done or the plugin is disabled
+        for (Method method : this.warmupMethods) {
+            int iterations = method.getAnnotation(Warmup.class).iterations();
+            long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+            try {
+                MethodHandle handle = MethodHandles.lookup().unreflect(method).bindTo(this.instance);
+                for (int iteration = 0; iteration < iterations && this.enabled; iteration++) {
+                    handle.invoke();
+                }
+            } catch (Throwable print) {
+                this.pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.ENABLING, this, "Warmup failed", method.getName(), print);
+            }
+            this.account(cpuStart, allocationStart);
+        }
+    }
+
+    protected boolean afterInitializationCalls() {
+        boolean called = true;
+        for (MethodCall methodCall : this.afterInitializationCalls) {
+            long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+            try {
+                // the call is skipped, if the fields don't match the arguments
+                if (!methodCall.invoke()) {
+                    this.pluginManager.getLogger().log(LogLevel.WARNING, LifecycleStage.ENABLING, this, "CallMethod skipped, the fields don't match the arguments", methodCall.getMethod().getName(), null);
+                }
+            } catch (Exception print) {
+                this.pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.ENABLING, this, "CallMethod failed", methodCall.getMethod().getName(), print);
+                called = false;
+            }
+            this.account(cpuStart, allocationStart);
+        }
+        return called;
+    }
+
+    private String fetchPluginVersion() {
+        // the class file holds only the values, that differ from the defaults
+        Object version = this.classInfo.getAnnotationValue(Plugin.class, "version");
+        return version != null ? (String) version : "UNKNOWN";
+    }
+
+    private String[] fetchDependencies() {
+        Object dependencies = this.classInfo.getAnnotationValue(Plugin.class, "dependencies");
+        if (!(dependencies instanceof List)) {
+            return new String[0];
+        }
+        List<?> list = (List<?>) dependencies;
+        return list.toArray(new String[list.size()]);
+    }
+
+    private void parseDependencies(String[] declarations) {
+        // "Name" or "Name:range", e.g. "Economy:[1.0,2.0)"
+        for (int index = 0; index < declarations.length; index++) {
+            String declaration = declarations[index];
+            int colon = declaration.indexOf(':');
+            if (colon < 0) {
+                this.dependencies[index] = declaration.trim();
+                this.dependencyRanges[index] = VersionRange.ANY;
+            } else {
+                this.dependencies[index] = declaration.substring(0, colon).trim();
+                this.dependencyRanges[index] = VersionRange.parse(declaration.substring(colon + 1));
+            }
+        }
+    }
+
+    private Method[] fetchMethods(Class<?> clazz) {
+        // create new map
+        Map<Priority, List<Method>> map = new TreeMap<Priority, List<Method>>();
+
+        // fetch methods
+        Method[] methods = this.instance.getClass().getDeclaredMethods();
+        Annotation[] annotations;
+        for (Method method : methods) {
+            // arguments are not allowed
+            if (method.getParameterTypes().length > 0) {
+                continue;
+            }
+
+            // fetch annotations
+            annotations = method.getDeclaredAnnotations();
+            for (Annotation annotation : annotations) {
+                // if the class is the same, append the method
+                if (clazz.isAssignableFrom(annotation.getClass())) {
+
+                    // fetch priority
+                    Priority priority = Priority.THIRD_MOST;
+                    if (PostEnable.class.isAssignableFrom(annotation.getClass())) {
+                        PostEnable onEnable = (PostEnable) annotation;
+                        priority = onEnable.priority();
+                    } else if (PreDisable.class.isAssignableFrom(annotation.getClass())) {
+                        PreDisable onDisable = (PreDisable) annotation;
+                        priority = onDisable.priority();
+                    }
+
+                    // create arrayList, if there isn't one
+                    if (!map.containsKey(priority)) {
+                        map.put(priority, new ArrayList<Method>());
+                    }
+
+                    // set accessible
+                    method.setAccessible(true);
+
+                    // append the method
+                    map.get(priority).add(method);
+                }
+            }
+        }
+
+        // flatten the map, ordered by priority
+        List<Method> list = new ArrayList<Method>();
+        for (List<Method> priorityList : map.values()) {
+            list.addAll(priorityList);
+        }
+        return list.toArray(new Method[list.size()]);
+    }
+
+    private boolean callMethods(Method[] methods, LifecycleStage stage) {
+        // for every method in the array...
+        boolean called = true;
+        for (Method method : methods) {
+            long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+            try {
+                // try to invoke the method
+                method.invoke(this.instance);
+            } catch (InvocationTargetException print) {
+                this.pluginManager.getLogger().log(LogLevel.ERROR, stage, this, "Hook failed", method.getName(), print.getCause());
+                called = false;
+            } catch (Exception print) {
+                this.pluginManager.getLogger().log(LogLevel.ERROR, stage, this, "Hook failed", method.getName(), print);
+                called = false;
+            }
+            this.account(cpuStart, allocationStart);
+        }
+        return called;
+    }
+
+    protected boolean enable() {
+        if (!this.enabled) {
+            // the plugin is instantiated, when it is enabled the first time
+            if (this.instance == null) {
+                try {
+                    this.instantiate();
+                } catch (PluginCreationFailedException print) {
+                    this.pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.ENABLING, this, print.getMessage(), null, print.getOriginalException());
+                    return false;
+                }
+            }
+            this.valid = true;
+            this.ready = false;
+            this.enabled = true;
+            return true;
+        }
+        return false;
+    }
+
+    protected boolean disable() {
+        if (this.enabled) {
+            this.enabled = false;
+            this.invalidate();
+            this.pluginManager.getServiceRegistry().unregisterAll(this);
+            this.pluginManager.getEventBus().unregister(this);
+            this.pluginManager.getTaskScheduler().cancelAll(this);
+
+            // the plugin creates new caches, when it is enabled again
+            this.invalidateCaches();
+            this.caches.clear();
+            return true;
+        }
+        return false;
+    }
+
+    protected <K, V> PluginCache<K, V> createCache(String name, long maxWeight, PluginCache.Weigher<? super K, ? super V> weigher, long expireAfterWrite, TimeUnit unit) {
+        PluginCache<K, V> cache = new PluginCache<K, V>(this.name + "." + name, maxWeight, weigher, expireAfterWrite, unit);
+        this.caches.add(cache);
+        return cache;
+    }
+
+    protected void invalidateCaches() {
+        for (PluginCache<?, ?> cache : this.caches) {
+            cache.invalidateAll();
+        }
+    }
+
+    protected List<CacheStats> getCacheStats() {
+        List<CacheStats> stats = new ArrayList<CacheStats>(this.caches.size());
+        for (PluginCache<?, ?> cache : this.caches) {
+            stats.add(cache.getStats());
+        }
+        return stats;
+    }
+
+    protected void invalidate() {
+        // cached handles must look up the plugin again
+        this.valid = false;
+    }
+
+    protected boolean callPostEnableMethods() {
+        if (this.enabled) {
+            // call postEnable-Methods
+            return this.callMethods(this.postEnableMethods, LifecycleStage.ENABLING);
+        }
+        return false;
+    }
+
+    protected boolean callPreDisableMethods() {
+        if (this.enabled) {
+            // call preDisable-Methods
+            this.callMethods(this.preDisableMethods, LifecycleStage.DISABLING);
+            return true;
+        }
+        return false;
+    }
+
+    protected Object exportState() {
+        long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+        try {
+            return this.instance.exportState();
+        } catch (Exception print) {
+            this.pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.SWAPPED, this, "State not exported", null, print);
+            return null;
+        } finally {
+            this.account(cpuStart, allocationStart);
+        }
+    }
+
+    protected boolean importState(Object state) {
+        long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+        try {
+            this.instance.importState(state);
+            return true;
+        } catch (Exception print) {
+            this.pluginManager.getLogger().log(LogLevel.ERROR, LifecycleStage.SWAPPED, this, "State not imported", null, print);
+            return false;
+        } finally {
+            this.account(cpuStart, allocationStart);
+        }
+    }
+
+    protected void account(long cpuStart, long allocationStart) {
+        // attribute the resources used since the start values to this plugin
+        this.cpuTime.addAndGet(ResourceMeter.cpuTime() - cpuStart);
+        this.allocatedBytes.addAndGet(ResourceMeter.allocatedBytes() - allocationStart);
+        this.invocations.incrementAndGet();
+    }
+
+    protected void setEnableUsage(long enableCpuTime, long enableAllocatedBytes, boolean overBudget) {
+        this.enableCpuTime = enableCpuTime;
+        this.enableAllocatedBytes = enableAllocatedBytes;
+        this.overBudget = overBudget;
+    }
+
+    protected PluginUsage getUsage() {
+        long cacheEntries = 0, cacheBytes = 0;
+        for (PluginCache<?, ?> cache : this.caches) {
+            cacheEntries += cache.size();
+            cacheBytes += cache.estimateBytes();
+        }
+        return new PluginUsage(this.name, this.version, this.cpuTime.get(), this.allocatedBytes.get(), this.invocations.get(), this.enableCpuTime, this.enableAllocatedBytes, this.overBudget, cacheEntries, cacheBytes);
+    }
+
+    protected long getCpuTime() {
+        return this.cpuTime.get();
+    }
+
+    protected long getAllocatedBytes() {
+        return this.allocatedBytes.get();
+    }
+
+    protected synchronized boolean acquire() {
+        // retired plugins don't accept new leases
+        if (!this.enabled || this.retired) {
+            return false;
+        }
+        this.leases++;
+        return true;
+    }
+
+    protected synchronized void release() {
+        this.leases--;
+        if (this.leases == 0) {
+            this.notifyAll();
+        }
+    }
+
+    protected synchronized boolean retire(long timeout) {
+        this.retired = true;
+
+        // wait for in-flight calls to drain
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (this.leases > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                this.wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> T getInstance(Class<? extends ExternalPlugin> clazz) {
+        return (T) instance;
+    }
+
+    // //////////////////////////////////////////////////////////////////////////////////////
+    //
+    // GET & SET
+    //
+    // //////////////////////////////////////////////////////////////////////////////////////
+
+    protected String getName() {
+        return this.name;
+    }
+
+    protected String getVersion() {
+        return this.version;
+    }
+
+    protected boolean isEnabled() {
+        return this.enabled;
+    }
+
+    protected boolean isReady() {
+        return this.enabled && this.ready;
+    }
+
+    protected void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    protected EventBus.Subscriber[] getEventSubscribers() {
+        return this.eventSubscribers;
+    }
+
+    protected boolean isValid() {
+        return this.valid;
+    }
+
+    protected synchronized void setPrefetchClasses(String[] prefetchClasses) {
+        this.prefetchClasses = prefetchClasses;
+    }
+
+    protected synchronized String[] takePrefetchClasses() {
+        // the classes are prefetched only once per classloader
+        String[] classNames = this.prefetchClasses;
+        this.prefetchClasses = new String[0];
+        return classNames;
+    }
+
+    protected Class<? extends ExternalPlugin> getPluginClass() {
+        return this.pluginClass;
+    }
+
+    protected ClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    protected File getPluginFile() {
+        return this.pluginFile;
+    }
+
+    protected String[] getDependencies() {
+        return this.dependencies;
+    }
+
+    protected VersionRange[] getDependencyRanges() {
+        return this.dependencyRanges;
+    }
+
+    protected Version getParsedVersion() {
+        return this.parsedVersion;
+    }
+
+}
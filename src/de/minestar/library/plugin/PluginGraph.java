@@ -0,0 +1,304 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.minestar.library.plugin.exceptions.CircularDependencyException;
+import de.minestar.library.plugin.exceptions.MissingDependencyException;
+import de.minestar.library.plugin.units.VersionRange;
+
+public class PluginGraph {
+
+    private final PluginDefinition[] plugins;
+    private final Map<String, Integer> ids;
+    private final int[] dependencyOffsets, dependencies;
+    private final int[] dependentOffsets, dependents;
+    private final String[] missingDependencies;
+    private List<MissingDependencyException> missingDependencyErrors;
+    private List<CircularDependencyException> circularDependencyErrors;
+
+    protected PluginGraph(Collection<PluginDefinition> pluginDefinitions) {
+        // intern the names to dense ids
+        this.plugins = pluginDefinitions.toArray(new PluginDefinition[pluginDefinitions.size()]);
+        this.ids = new HashMap<String, Integer>(this.plugins.length * 2);
+        for (int id = 0; id < this.plugins.length; id++) {
+            this.ids.put(this.plugins[id].getName(), id);
+        }
+
+        // count the edges
+        int edges = 0;
+        for (PluginDefinition pluginDefinition : this.plugins) {
+            edges += pluginDefinition.getDependencies().length;
+        }
+
+        // create the dependency adjacency
+        this.missingDependencies = new String[this.plugins.length];
+        int[] dependentCount = new int[this.plugins.length];
+        this.dependencyOffsets = new int[this.plugins.length + 1];
+        this.dependencies = new int[edges];
+        int edge = 0;
+        for (int id = 0; id < this.plugins.length; id++) {
+            this.dependencyOffsets[id] = edge;
+            String[] names = this.plugins[id].getDependencies();
+            VersionRange[] ranges = this.plugins[id].getDependencyRanges();
+            for (int index = 0; index < names.length; index++) {
+                // a dependency with the wrong version counts as missing
+                Integer target = this.ids.get(names[index]);
+                if (target == null || !ranges[index].contains(this.plugins[target].getParsedVersion())) {
+                    // remember the first missing dependency of every plugin
+                    if (this.missingDependencies[id] == null) {
+                        this.missingDependencies[id] = ranges[index] == VersionRange.ANY ? names[index] : names[index] + ":" + ranges[index];
+                    }
+                    continue;
+                }
+                this.dependencies[edge++] = target;
+                dependentCount[target]++;
+            }
+        }
+        this.dependencyOffsets[this.plugins.length] = edge;
+
+        // create the reverse adjacency
+        this.dependentOffsets = new int[this.plugins.length + 1];
+        for (int id = 0; id < this.plugins.length; id++) {
+            this.dependentOffsets[id + 1] = this.dependentOffsets[id] + dependentCount[id];
+        }
+        this.dependents = new int[edge];
+        int[] position = new int[this.plugins.length];
+        System.arraycopy(this.dependentOffsets, 0, position, 0, this.plugins.length);
+        for (int id = 0; id < this.plugins.length; id++) {
+            for (int index = this.dependencyOffsets[id]; index < this.dependencyOffsets[id + 1]; index++) {
+                this.dependents[position[this.dependencies[index]]++] = id;
+            }
+        }
+    }
+
+    protected List<MissingDependencyException> getMissingDependencies() {
+        this.checkDependencies();
+        return this.missingDependencyErrors;
+    }
+
+    protected List<CircularDependencyException> getCircularDependencies() {
+        this.checkDependencies();
+        return this.circularDependencyErrors;
+    }
+
+    private void checkDependencies() {
+        // one pass finds every broken plugin, the removals are propagated to the dependents
+        if (this.missingDependencyErrors != null) {
+            return;
+        }
+        this.missingDependencyErrors = new ArrayList<MissingDependencyException>();
+        this.circularDependencyErrors = new ArrayList<CircularDependencyException>();
+
+        // plugins with a missing dependency
+        boolean[] broken = new boolean[this.plugins.length];
+        int[] queue = new int[this.plugins.length];
+        int tail = 0;
+        for (int id = 0; id < this.plugins.length; id++) {
+            if (this.missingDependencies[id] != null) {
+                broken[id] = true;
+                queue[tail++] = id;
+                this.missingDependencyErrors.add(this.createMissingDependencyException(id, this.missingDependencies[id]));
+            }
+        }
+
+        // plugins on a cycle, found by an iterative depth-first search over the rest: 0 = new, 1 = on the stack, 2 = done
+        byte[] state = new byte[this.plugins.length];
+        int[] stack = new int[this.plugins.length];
+        int[] next = new int[this.plugins.length];
+        for (int root = 0; root < this.plugins.length; root++) {
+            if (state[root] != 0 || this.missingDependencies[root] != null) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = root;
+            next[0] = this.dependencyOffsets[root];
+            state[root] = 1;
+            while (depth >= 0) {
+                int id = stack[depth];
+                if (next[depth] < this.dependencyOffsets[id + 1]) {
+                    int dependency = this.dependencies[next[depth]++];
+                    if (this.missingDependencies[dependency] != null) {
+                        continue;
+                    }
+                    if (state[dependency] == 1) {
+                        // every cycle contains a back edge, a cycle is reported once
+                        if (!broken[dependency] || !broken[id]) {
+                            PluginDefinition first = this.plugins[dependency], second = this.plugins[id];
+                            this.circularDependencyErrors.add(new CircularDependencyException("Circular dependency between '" + first.getName() + "' and '" + second.getName() + "' found. Both plugins will be ignored!", first, second));
+                        }
+                        if (!broken[dependency]) {
+                            broken[dependency] = true;
+                            queue[tail++] = dependency;
+                        }
+                        if (!broken[id]) {
+                            broken[id] = true;
+                            queue[tail++] = id;
+                        }
+                    } else if (state[dependency] == 0) {
+                        state[dependency] = 1;
+                        stack[++depth] = dependency;
+                        next[depth] = this.dependencyOffsets[dependency];
+                    }
+                } else {
+                    state[id] = 2;
+                    depth--;
+                }
+            }
+        }
+
+        // the dependents of broken plugins are missing them
+        int head = 0;
+        while (head < tail) {
+            int id = queue[head++];
+            for (int index = this.dependentOffsets[id]; index < this.dependentOffsets[id + 1]; index++) {
+                int dependent = this.dependents[index];
+                if (!broken[dependent]) {
+                    broken[dependent] = true;
+                    queue[tail++] = dependent;
+                    this.missingDependencyErrors.add(this.createMissingDependencyException(dependent, this.plugins[id].getName()));
+                }
+            }
+        }
+    }
+
+    private MissingDependencyException createMissingDependencyException(int id, String dependency) {
+        PluginDefinition pluginDefinition = this.plugins[id];
+        return new MissingDependencyException("Plugin '" + pluginDefinition.getName() + "' is missing depending plugin '" + dependency + "'. Plugin will be ignored!", pluginDefinition, dependency);
+    }
+
+    protected List<PluginDefinition> getTopologicalOrder() {
+        boolean[] selected = new boolean[this.plugins.length];
+        for (int id = 0; id < selected.length; id++) {
+            selected[id] = true;
+        }
+        return this.sort(selected);
+    }
+
+    protected List<PluginDefinition> sortByDependencies(Collection<PluginDefinition> pluginDefinitions) {
+        return this.sort(this.select(pluginDefinitions));
+    }
+
+    protected List<PluginDefinition> getDependentClosure(Collection<PluginDefinition> roots) {
+        // breadth-first search over the reverse adjacency
+        boolean[] selected = this.select(roots);
+        int[] queue = new int[this.plugins.length];
+        int head = 0, tail = 0;
+        for (int id = 0; id < selected.length; id++) {
+            if (selected[id]) {
+                queue[tail++] = id;
+            }
+        }
+        while (head < tail) {
+            int id = queue[head++];
+            for (int index = this.dependentOffsets[id]; index < this.dependentOffsets[id + 1]; index++) {
+                int dependent = this.dependents[index];
+                if (!selected[dependent]) {
+                    selected[dependent] = true;
+                    queue[tail++] = dependent;
+                }
+            }
+        }
+        return this.sort(selected);
+    }
+
+    protected List<PluginDefinition> getDependencyClosure(Collection<PluginDefinition> roots) {
+        // breadth-first search over the dependency adjacency
+        boolean[] selected = this.select(roots);
+        int[] queue = new int[this.plugins.length];
+        int head = 0, tail = 0;
+        for (int id = 0; id < selected.length; id++) {
+            if (selected[id]) {
+                queue[tail++] = id;
+            }
+        }
+        while (head < tail) {
+            int id = queue[head++];
+            for (int index = this.dependencyOffsets[id]; index < this.dependencyOffsets[id + 1]; index++) {
+                int dependency = this.dependencies[index];
+                if (!selected[dependency]) {
+                    selected[dependency] = true;
+                    queue[tail++] = dependency;
+                }
+            }
+        }
+        return this.sort(selected);
+    }
+
+    private boolean[] select(Collection<PluginDefinition> pluginDefinitions) {
+        boolean[] selected = new boolean[this.plugins.length];
+        for (PluginDefinition pluginDefinition : pluginDefinitions) {
+            Integer id = this.ids.get(pluginDefinition.getName());
+            if (id != null && this.plugins[id] == pluginDefinition) {
+                selected[id] = true;
+            }
+        }
+        return selected;
+    }
+
+    private List<PluginDefinition> sort(boolean[] selected) {
+        // count the selected dependencies of every selected plugin
+        int[] pending = new int[this.plugins.length];
+        int[] queue = new int[this.plugins.length];
+        int head = 0, tail = 0;
+        for (int id = 0; id < this.plugins.length; id++) {
+            if (!selected[id]) {
+                continue;
+            }
+            for (int index = this.dependencyOffsets[id]; index < this.dependencyOffsets[id + 1]; index++) {
+                if (selected[this.dependencies[index]]) {
+                    pending[id]++;
+                }
+            }
+            if (pending[id] == 0) {
+                queue[tail++] = id;
+            }
+        }
+
+        // Kahn's algorithm: dependencies first
+        List<PluginDefinition> result = new ArrayList<PluginDefinition>(tail);
+        while (head < tail) {
+            int id = queue[head++];
+            result.add(this.plugins[id]);
+            for (int index = this.dependentOffsets[id]; index < this.dependentOffsets[id + 1]; index++) {
+                int dependent = this.dependents[index];
+                if (selected[dependent] && --pending[dependent] == 0) {
+                    queue[tail++] = dependent;
+                }
+            }
+        }
+        return result;
+    }
+
+    protected int size() {
+        return this.plugins.length;
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+public class PluginHandle<T> {
+
+    private final PluginManager pluginManager;
+    private final String name;
+    private volatile PluginDefinition cached;
+
+    protected PluginHandle(PluginManager pluginManager, String name) {
+        this.pluginManager = pluginManager;
+        this.name = name;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get() {
+        // fast path: the cached plugin, until it is disabled or swapped
+        PluginDefinition pluginDefinition = this.cached;
+        if (pluginDefinition != null && pluginDefinition.isValid()) {
+            return (T) pluginDefinition.getInstance(pluginDefinition.getPluginClass());
+        }
+        return this.lookup();
+    }
+
+    private T lookup() {
+        // slow path: the plugin must be enabled
+        PluginDefinition pluginDefinition = this.pluginManager.getEnabledPlugin(this.name);
+        if (pluginDefinition == null) {
+            this.cached = null;
+            return null;
+        }
+
+        // cache the plugin, a disabled or swapped definition is looked up again next time
+        this.cached = pluginDefinition;
+        return pluginDefinition.getInstance(pluginDefinition.getPluginClass());
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+}
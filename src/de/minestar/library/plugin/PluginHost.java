@@ -0,0 +1,215 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.minestar.library.plugin.ipc.IpcChannel;
+import de.minestar.library.plugin.ipc.IpcMessage;
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class PluginHost {
+
+    // the child sends its calls and events to the parent on a second channel
+    protected static final String CALLBACKS = ".callbacks";
+
+    private final PluginManager pluginManager;
+    private final File source;
+    private final String name;
+    private final long timeout;
+    private final IpcChannel channel, callbacks;
+    private final AtomicLong droppedEvents;
+    private PluginDefinition pluginDefinition;
+    private long requestId;
+    private volatile Object incoming;
+
+    private PluginHost(File pluginFolder, File source, String name, File channelDirectory, long timeout) throws IOException, ReflectiveOperationException {
+        this.source = source;
+        this.name = name;
+        this.timeout = timeout;
+        this.channel = IpcChannel.open(channelDirectory, name, false);
+        this.callbacks = IpcChannel.open(channelDirectory, name + CALLBACKS, true);
+        this.droppedEvents = new AtomicLong();
+        this.pluginManager = new PluginManager(pluginFolder, this);
+
+        // events of the plugin go to the parent as well
+        this.pluginManager.getEventBus().setForwarder(MethodHandles.lookup().findVirtual(PluginHost.class, "forwardEvent", MethodType.methodType(void.class, Object.class)).bindTo(this));
+    }
+
+    private void run() throws IOException {
+        while (true) {
+            IpcMessage request = this.channel.receive(Long.MAX_VALUE);
+            if (request == null) {
+                continue;
+            }
+            this.requestId = request.getId();
+            switch (request.getType()) {
+                case IpcMessage.ENABLE :
+                    this.enable();
+                    break;
+                case IpcMessage.CALL :
+                    this.call(request);
+                    break;
+                case IpcMessage.EVENT :
+                    // events are one-way, the forwarder doesn't send them back
+                    this.incoming = request.getPayload();
+                    try {
+                        this.pluginManager.getEventBus().post(request.getPayload());
+                    } finally {
+                        this.incoming = null;
+                    }
+                    break;
+                case IpcMessage.DISABLE :
+                    this.pluginManager.disablePlugins();
+                    this.respond(IpcMessage.RESULT, null);
+                    this.pluginManager.getLogSink().flush();
+                    return;
+                default :
+                    this.respond(IpcMessage.FAILURE, new IllegalArgumentException("Unknown message type " + request.getType() + "!"));
+            }
+        }
+    }
+
+    private void enable() throws IOException {
+        // only the plugin itself, its dependencies are proxies to the parent
+        PluginDefinition loaded = this.pluginManager.getLoadedPlugin(this.name);
+        if (loaded == null) {
+            this.respond(IpcMessage.FAILURE, new IllegalStateException("Plugin '" + this.name + "' not found in " + this.source + "!"));
+            return;
+        }
+        this.channel.setClassLoader(loaded.getClassLoader());
+        this.callbacks.setClassLoader(loaded.getClassLoader());
+        this.pluginManager.enablePlugins(Collections.singleton(this.name));
+        this.pluginDefinition = this.pluginManager.getEnabledPlugin(this.name);
+        if (this.pluginDefinition == null) {
+            this.respond(IpcMessage.FAILURE, new IllegalStateException("Plugin '" + this.name + "' could not be enabled!"));
+            return;
+        }
+
+        // the parent forwards the events, the plugin subscribed to: pairs of event type and priority
+        EventBus.Subscriber[] subscribers = this.pluginDefinition.getEventSubscribers();
+        String[] subscriptions = new String[subscribers.length * 2];
+        for (int index = 0; index < subscribers.length; index++) {
+            subscriptions[index * 2] = subscribers[index].getEventType().getName();
+            subscriptions[index * 2 + 1] = subscribers[index].getPriority().name();
+        }
+        this.respond(IpcMessage.RESULT, subscriptions);
+    }
+
+    private void call(IpcMessage request) throws IOException {
+        try {
+            // find the method by name and parameter types
+            Object[] payload = (Object[]) request.getPayload();
+            Class<?>[] parameterTypes = IpcMessage.resolveTypes((String[]) payload[0], this.pluginDefinition.getClassLoader());
+            this.respond(IpcMessage.RESULT, this.pluginDefinition.invoke(request.getName(), parameterTypes, (Object[]) payload[1]));
+        } catch (Throwable cause) {
+            this.respond(IpcMessage.FAILURE, cause);
+        }
+    }
+
+    private void respond(byte type, Object payload) throws IOException {
+        this.channel.respond(this.requestId, type, this.name, payload, this.timeout);
+    }
+
+    @SuppressWarnings("unused")
+    private void forwardEvent(Object event) {
+        // events from the parent aren't sent back, a busy parent drops the event instead of blocking the plugin
+        if (event == this.incoming) {
+            return;
+        }
+        try {
+            if (!this.callbacks.post(new IpcMessage(IpcMessage.EVENT, null, event))) {
+                long dropped = this.droppedEvents.incrementAndGet();
+                if ((dropped & (dropped - 1)) == 0) {
+                    this.pluginManager.getLogger().log(LogLevel.WARNING, null, this.name, "Event dropped, the parent doesn't keep up", dropped + " dropped", null);
+                }
+            }
+        } catch (IOException print) {
+            // events, that can't be serialized, stay in this JVM
+            this.pluginManager.getLogger().log(LogLevel.DEBUG, null, this.name, "Event not forwarded", event.getClass().getName(), print);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> T createProxy(final String pluginName, Class<T> type) {
+        // every call of the interface is forwarded to the parent
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(PluginHost.this, args);
+                }
+                Object[] payload = new Object[] { method.getName(), IpcMessage.getTypeNames(method.getParameterTypes()), args != null ? args : new Object[0] };
+                return PluginHost.this.callbacks.request(IpcMessage.CALL, pluginName, payload, PluginHost.this.timeout);
+            }
+        });
+    }
+
+    protected String getName() {
+        return this.name;
+    }
+
+    protected File getSource() {
+        return this.source;
+    }
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        if (args.length != 5) {
+            System.err.println("Usage: PluginHost <pluginFolder> <pluginSource> <pluginName> <channelFolder> <timeoutMillis>");
+            System.exit(1);
+        }
+
+        // the host exits, when the parent closes stdin
+        Thread watchdog = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (System.in.read() >= 0) {
+                        // nothing to do
+                    }
+                } catch (IOException e) {
+                    // the parent is gone
+                }
+                System.exit(0);
+            }
+        }, "PluginHost-Watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[4]));
+        new PluginHost(new File(args[0]), new File(args[1]), args[2], new File(args[3]), timeout).run();
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+public class PluginLease<T> implements AutoCloseable {
+
+    private final PluginDefinition pluginDefinition;
+    private final T instance;
+    private boolean closed;
+
+    protected PluginLease(PluginDefinition pluginDefinition) {
+        this.pluginDefinition = pluginDefinition;
+        this.instance = pluginDefinition.getInstance(pluginDefinition.getPluginClass());
+        this.closed = false;
+    }
+
+    public T get() {
+        return this.instance;
+    }
+
+    @Override
+    public void close() {
+        // every lease is returned only once
+        if (!this.closed) {
+            this.closed = true;
+            this.pluginDefinition.release();
+        }
+    }
+
+}
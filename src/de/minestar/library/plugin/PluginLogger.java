@@ -0,0 +1,67 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import de.minestar.library.plugin.logging.LifecycleRecord;
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.logging.LogSink;
+
+public class PluginLogger {
+
+    private volatile LogSink logSink;
+
+    protected PluginLogger(LogSink logSink) {
+        this.logSink = logSink;
+    }
+
+    protected void log(LogLevel level, LifecycleStage stage, PluginDefinition pluginDefinition, String message, Object detail, Throwable cause) {
+        // nothing is created for disabled levels
+        if (this.logSink.isEnabled(level)) {
+            this.logSink.log(new LifecycleRecord(System.currentTimeMillis(), level, stage, pluginDefinition.getName(), pluginDefinition.getVersion(), message, detail, cause));
+        }
+    }
+
+    protected void log(LogLevel level, LifecycleStage stage, String pluginName, String message, Object detail, Throwable cause) {
+        // nothing is created for disabled levels
+        if (this.logSink.isEnabled(level)) {
+            this.logSink.log(new LifecycleRecord(System.currentTimeMillis(), level, stage, pluginName, null, message, detail, cause));
+        }
+    }
+
+    protected boolean isLoggable(LogLevel level) {
+        // for callers, that would build the detail in vain
+        return this.logSink.isEnabled(level);
+    }
+
+    protected LogSink getLogSink() {
+        return this.logSink;
+    }
+
+    protected void setLogSink(LogSink logSink) {
+        this.logSink = logSink;
+    }
+
+}
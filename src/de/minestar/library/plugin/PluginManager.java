@@ -1,311 +1,1404 @@
-/**
- * The MIT License (MIT)
- * 
- * Copyright (c) 2014 Minestar.de
- * 
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- * 
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-
-package de.minestar.library.plugin;
-
-import java.io.File;
-import java.io.IOException;
-import java.lang.annotation.Annotation;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-
-import de.minestar.library.plugin.annotations.Plugin;
-import de.minestar.library.plugin.exceptions.CircularDependencyException;
-import de.minestar.library.plugin.exceptions.MissingDependencyException;
-import de.minestar.library.plugin.exceptions.PluginExistsException;
-
-public class PluginManager {
-
-    private final File pluginFolder;
-    private final Map<String, PluginDefinition> loadedPlugins, enabledPlugins;
-
-    public PluginManager(File pluginFolder) throws IOException {
-        this(pluginFolder, false);
-    }
-
-    public PluginManager(File pluginFolder, boolean enablePlugins) throws IOException {
-        this.pluginFolder = pluginFolder;
-        this.loadedPlugins = this.loadPlugins(pluginFolder);
-        this.enabledPlugins = new HashMap<String, PluginDefinition>();
-        if (enablePlugins) {
-            this.enablePlugins();
-        }
-    }
-
-    private Map<String, PluginDefinition> loadPlugins(File folder) throws IOException {
-        // create new set
-        Map<String, PluginDefinition> map = new HashMap<String, PluginDefinition>();
-
-        // folder must exist
-        if (folder.exists()) {
-            File[] files = folder.listFiles();
-            for (File file : files) {
-                // directories and files without ".jar"-ending are ignored
-                if (file.isDirectory() || !file.getName().endsWith(".jar")) {
-                    continue;
-                }
-
-                // open JAR
-                JarFile jarFile = new JarFile(file);
-                Enumeration<JarEntry> e = jarFile.entries();
-
-                // create URL and classloader
-                URL[] urls = { new URL("jar:file:" + file.getAbsolutePath() + "!/") };
-                URLClassLoader cl = URLClassLoader.newInstance(urls);
-
-                // iterate over elements...
-                Class<? extends ExternalPlugin> clazz;
-                while (e.hasMoreElements()) {
-                    try {
-                        // get the class
-                        clazz = this.processJarEntry(cl, (JarEntry) e.nextElement());
-                        // we need a valid class to process this class
-                        if (clazz != null) {
-                            // the class name must be unique
-                            if (!map.containsKey(clazz.getSimpleName())) {
-                                // create "AbstractPlugin"
-                                PluginDefinition pluginDefinition = PluginDefinition.createPlugin(this, clazz);
-                                // if everything is okay
-                                if (pluginDefinition != null) {
-                                    // add the class to the map
-                                    map.put(pluginDefinition.getName(), pluginDefinition);
-                                }
-                            } else {
-                                throw new PluginExistsException("A plugin named '" + clazz.getSimpleName() + "' already exists!");
-                            }
-                        }
-                    } catch (PluginExistsException print) {
-                        print.printStackTrace();
-                    }
-                }
-
-                // close JAR
-                jarFile.close();
-            }
-        }
-        return map;
-    }
-
-    @SuppressWarnings("unchecked")
-    private Class<? extends ExternalPlugin> processJarEntry(URLClassLoader cl, JarEntry jarEntry) {
-        // directories and files without ".class"-ending are ignored
-        if (jarEntry.isDirectory() || !jarEntry.getName().endsWith(".class")) {
-            return null;
-        }
-
-        // -6, because of .class
-        String className = jarEntry.getName().substring(0, jarEntry.getName().length() - 6);
-        className = className.replace('/', '.');
-
-        try {
-            // load the class
-            Class<?> clazz = cl.loadClass(className);
-            // check class and "Plugin"-Annotation
-            if (ExternalPlugin.class.isAssignableFrom(clazz) && this.hasAnnotation(clazz, Plugin.class)) {
-                return (Class<? extends ExternalPlugin>) clazz;
-            }
-        } catch (ClassNotFoundException print) {
-            print.printStackTrace();
-        }
-        return null;
-    }
-
-    private boolean hasAnnotation(Class<?> clazz, Class<?> annotationToSearch) {
-        // fetch annotations
-        Annotation[] annotations = clazz.getDeclaredAnnotations();
-        for (Annotation annotation : annotations) {
-            // if the annotation is inherited, return true
-            if (annotationToSearch.isAssignableFrom(annotation.getClass())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    public boolean isPluginEnabled(String name) {
-        return this.hasPlugin(name) && this.getLoadedPlugin(name).isEnabled();
-    }
-
-    public boolean hasPlugin(String name) {
-        return this.loadedPlugins.containsKey(name);
-    }
-
-    public <T> T getPlugin(Class<? extends ExternalPlugin> clazz) {
-        PluginDefinition pluginDefinition = this.enabledPlugins.get(clazz.getSimpleName());
-        if (pluginDefinition != null) {
-            return pluginDefinition.getInstance(clazz);
-        }
-        return null;
-    }
-
-    protected PluginDefinition getLoadedPlugin(String name) {
-        return this.loadedPlugins.get(name);
-    }
-
-    private void enablePlugin(PluginDefinition pluginDefinition) {
-        // catch null
-        if (pluginDefinition == null) {
-            return;
-        }
-
-        try {
-            // check for enabled plugins with the same name
-            if (this.enabledPlugins.containsKey(pluginDefinition.getName())) {
-                // if the name is the same, but the objects are different =>
-                // throw an exception
-                if (!this.enabledPlugins.get(pluginDefinition.getName()).equals(pluginDefinition)) {
-                    throw new PluginExistsException("A different plugin named '" + pluginDefinition.getName() + "' already exists!");
-                } else {
-                    return;
-                }
-            }
-
-            // enable plugin, only if it is disabled
-            if (!pluginDefinition.isEnabled()) {
-                if (pluginDefinition.enable()) {
-                    this.enabledPlugins.put(pluginDefinition.getName(), pluginDefinition);
-                    System.out.println("Plugin enabled: " + pluginDefinition.getName() + " [ v" + pluginDefinition.getVersion() + " ]!");
-                } else {
-                    System.err.println("Plugin not enabled: " + pluginDefinition.getName() + " [ v" + pluginDefinition.getVersion() + " ]!");
-                }
-            }
-        } catch (PluginExistsException print) {
-            print.printStackTrace();
-        }
-    }
-
-    public void enablePlugins() {
-        // disable active plugins
-        this.disablePlugins();
-
-        // check for missing & circular dependencies
-        // we need to repeat these checks, until we have no more errors.
-        // otherwise it would be possible to have plugins that will be enabled, if they have a missing/circular dependency
-        while (!(this.checkForMissingDependencies() && this.checkForCircularDependencies()));
-
-        // enable all plugins
-        for (PluginDefinition pluginDefinition : this.loadedPlugins.values()) {
-            this.enablePlugin(pluginDefinition);
-        }
-
-        // call postEnable-methods
-        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
-            pluginDefinition.callPostEnableMethods();
-        }
-
-        // call afterInitialization-Methods
-        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
-            pluginDefinition.afterInitializationCalls();
-        }
-    }
-
-    private boolean checkForMissingDependencies() {
-        // check for missing dependencies
-        try {
-            for (PluginDefinition pluginDefinition : this.loadedPlugins.values()) {
-                pluginDefinition.updateDependencies();
-            }
-            return true;
-        } catch (MissingDependencyException print) {
-            // print the error
-            System.err.println(print.getMessage());
-
-            // remove the plugin
-            this.loadedPlugins.remove(print.getPluginDefinition().getName());
-            return false;
-        }
-    }
-
-    private boolean checkForCircularDependencies() {
-        try {
-            for (PluginDefinition pluginDefinition : this.loadedPlugins.values()) {
-                pluginDefinition.checkForCircularDependencies(pluginDefinition, new ArrayList<PluginDefinition>());
-            }
-            return true;
-        } catch (CircularDependencyException print) {
-            // print the error
-            System.err.println(print.getMessage());
-
-            // remove the plugins
-            this.loadedPlugins.remove(print.getFirstPluginDefinition().getName());
-            this.loadedPlugins.remove(print.getSecondPluginDefinition().getName());
-            return false;
-        }
-    }
-
-    public void disablePlugins() {
-        // call preDisable-methods
-        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
-            pluginDefinition.callPreDisableMethods();
-        }
-
-        // disable all plugins
-        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
-            if (pluginDefinition.disable()) {
-                System.out.println("Plugin disabled: " + pluginDefinition.getName() + " [ v" + pluginDefinition.getVersion() + " ]!");
-            } else {
-                System.err.println("Plugin not disabled: " + pluginDefinition.getName() + " [ v" + pluginDefinition.getVersion() + " ]!");
-            }
-        }
-
-        // clear list
-        this.enabledPlugins.clear();
-    }
-
-    public void reloadLoadedPlugins() {
-        // disable plugins
-        this.disablePlugins();
-
-        // enable plugins
-        this.enablePlugins();
-    }
-
-    public void reloadAllPlugins() throws IOException {
-        // disable plugins
-        this.disablePlugins();
-
-        // clear old maps
-        this.loadedPlugins.clear();
-
-        // search plugins
-        this.loadedPlugins.putAll(this.loadPlugins(this.pluginFolder));
-
-        // enable plugins
-        this.enablePlugins();
-    }
-
-    public void listPlugins() {
-        System.out.println("Plugins found: " + this.loadedPlugins.size());
-        for (PluginDefinition pluginDefinition : this.loadedPlugins.values()) {
-            System.out.println("-> " + pluginDefinition.getName() + " [ v" + pluginDefinition.getVersion() + " ]");
-        }
-    }
-
-}
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.minestar.library.plugin.annotations.Extension;
+import de.minestar.library.plugin.annotations.Plugin;
+import de.minestar.library.plugin.exceptions.CircularDependencyException;
+import de.minestar.library.plugin.exceptions.MissingDependencyException;
+import de.minestar.library.plugin.exceptions.PluginExistsException;
+import de.minestar.library.plugin.ipc.IpcMessage;
+import de.minestar.library.plugin.logging.AsyncLogSink;
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.logging.LogSink;
+import de.minestar.library.plugin.units.CacheStats;
+import de.minestar.library.plugin.units.ClassInfo;
+import de.minestar.library.plugin.units.PluginUsage;
+import de.minestar.library.plugin.units.Priority;
+import de.minestar.library.plugin.units.SourceScanner;
+import de.minestar.library.plugin.units.StartupProfile;
+import de.minestar.library.plugin.units.Version;
+
+public class PluginManager {
+
+    private final File pluginFolder;
+    private final Map<String, PluginDefinition> loadedPlugins, enabledPlugins;
+    private final ConcurrentHashMap<String, PluginHandle<?>> pluginHandles;
+    private final ServiceRegistry serviceRegistry;
+    private final EventBus eventBus;
+    private final ExtensionIndex extensionIndex;
+    private final ResourceIndex resourceIndex;
+    private final TaskScheduler taskScheduler;
+    private final LifecyclePublisher lifecyclePublisher;
+    private final StartupJournal journal;
+    private final ClassPrefetcher classPrefetcher;
+    private final CheckpointStore checkpointStore;
+    private final StartupProfile startupProfile;
+    private volatile Set<String> profileSelection;
+    private final Set<String> outOfProcess;
+    private final ConcurrentHashMap<String, RemotePlugin> remotePlugins;
+    private volatile List<String> hostJvmOptions = Collections.emptyList();
+    private long hostTimeout = 30000;
+    private volatile boolean warmupEnabled = true;
+    private Executor warmupExecutor;
+    private final PluginLogger logger;
+    private final Map<File, List<String>> pluginClasses;
+    private final Map<File, File> duplicateSources;
+    private final PluginHost host;
+    private PluginGraph pluginGraph;
+    private long drainTimeout = 10000;
+    private long enableCpuBudget = 0, enableAllocationBudget = 0;
+
+    public PluginManager(File pluginFolder) throws IOException {
+        this(pluginFolder, false);
+    }
+
+    public PluginManager(File pluginFolder, boolean enablePlugins) throws IOException {
+        this(pluginFolder, null, enablePlugins);
+    }
+
+    public PluginManager(File pluginFolder, StartupProfile startupProfile, boolean enablePlugins) throws IOException {
+        this(pluginFolder, startupProfile, enablePlugins, null);
+    }
+
+    protected PluginManager(File pluginFolder, PluginHost host) throws IOException {
+        this(pluginFolder, null, false, host);
+    }
+
+    private PluginManager(File pluginFolder, StartupProfile startupProfile, boolean enablePlugins, PluginHost host) throws IOException {
+        // a hosted manager shares the folder with its parent, the journal and the checkpoint cleanup stay with the parent
+        this.pluginFolder = pluginFolder;
+        this.host = host;
+        this.startupProfile = startupProfile;
+        this.logger = new PluginLogger(new AsyncLogSink(LogLevel.INFO));
+        this.serviceRegistry = new ServiceRegistry();
+        this.eventBus = new EventBus(this.logger);
+        this.extensionIndex = new ExtensionIndex(this.logger);
+        this.resourceIndex = new ResourceIndex();
+        this.taskScheduler = new TaskScheduler(this.logger);
+        this.lifecyclePublisher = new LifecyclePublisher(this.logger);
+        this.classPrefetcher = new ClassPrefetcher(this.logger);
+        this.checkpointStore = new CheckpointStore(pluginFolder, this.logger);
+        this.outOfProcess = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.remotePlugins = new ConcurrentHashMap<String, RemotePlugin>();
+        this.pluginClasses = new ConcurrentHashMap<File, List<String>>();
+        this.duplicateSources = new ConcurrentHashMap<File, File>();
+        this.journal = host != null ? new StartupJournal(this.logger) : new StartupJournal(pluginFolder, this.logger);
+        this.loadedPlugins = new ConcurrentHashMap<String, PluginDefinition>(host != null ? this.loadHostedPlugin(host.getSource(), host.getName()) : this.resolveVersions(this.loadPlugins(pluginFolder, this.journal.isRecovering())));
+        this.enabledPlugins = new ConcurrentHashMap<String, PluginDefinition>();
+        this.pluginHandles = new ConcurrentHashMap<String, PluginHandle<?>>();
+        if (enablePlugins) {
+            this.enablePlugins();
+        }
+
+        // late subscribers get this start replayed
+        this.lifecyclePublisher.endStart();
+    }
+
+    private List<PluginDefinition> loadPlugins(File folder, boolean knownGoodOnly) throws IOException {
+        // create new list
+        List<PluginDefinition> list = new ArrayList<PluginDefinition>();
+        Map<String, Set<Version>> versions = new HashMap<String, Set<Version>>();
+
+        // after a crash, only the sources of the last working start are loaded
+        List<File> sources = findPluginSources(folder);
+        if (knownGoodOnly) {
+            List<File> knownGood = this.journal.getKnownGoodSources(sources);
+            if (!knownGood.isEmpty()) {
+                this.logger.log(LogLevel.WARNING, LifecycleStage.DISCOVERED, (String) null, "Recovering from a crash, loading the known-good plugins", this.journal.getKnownGoodPlugins(), null);
+                sources = knownGood;
+            }
+        }
+
+        // read the classes of every JAR and exploded directory, identical JARs only once
+        Map<File, List<ClassInfo>> scans = new LinkedHashMap<File, List<ClassInfo>>();
+        Map<File, List<String>> resources = new LinkedHashMap<File, List<String>>();
+        for (File file : this.removeDuplicates(sources)) {
+            scans.put(file, this.scanSource(file, resources));
+        }
+
+        // the startup profile decides, which plugins are loaded at all
+        this.profileSelection = this.selectProfile(scans.values());
+
+        // checkpoints of plugins, that don't exist anymore, are removed
+        if (!knownGoodOnly && this.host == null) {
+            this.checkpointStore.retainAll(this.getPluginNames(scans.values()));
+        }
+
+        // load the plugins
+        for (Map.Entry<File, List<ClassInfo>> entry : scans.entrySet()) {
+            File file = entry.getKey();
+            Map<String, PluginDefinition> map = new HashMap<String, PluginDefinition>();
+            this.loadSource(file, entry.getValue(), map, resources);
+            for (PluginDefinition pluginDefinition : map.values()) {
+                try {
+                    // several versions of a plugin may exist, but every version only once
+                    Set<Version> known = versions.get(pluginDefinition.getName());
+                    if (known == null) {
+                        known = new HashSet<Version>();
+                        versions.put(pluginDefinition.getName(), known);
+                    }
+                    if (!known.add(pluginDefinition.getParsedVersion())) {
+                        throw new PluginExistsException("A plugin named '" + pluginDefinition.getName() + "' with version '" + pluginDefinition.getVersion() + "' already exists!");
+                    }
+                    list.add(pluginDefinition);
+                } catch (PluginExistsException print) {
+                    this.logger.log(LogLevel.ERROR, LifecycleStage.DISCOVERED, (String) null, print.getMessage(), file, null);
+                }
+            }
+        }
+
+        // the resources of all loaded sources are indexed at once
+        this.resourceIndex.registerAll(resources);
+        return list;
+    }
+
+    private Map<String, PluginDefinition> loadHostedPlugin(File source, String name) throws IOException {
+        // a plugin host loads only its own plugin, the dependencies stay in the parent
+        this.profileSelection = Collections.singleton(name);
+        Map<String, PluginDefinition> map = new HashMap<String, PluginDefinition>();
+        this.loadSource(source, map);
+        return map;
+    }
+
+    private List<File> removeDuplicates(List<File> sources) {
+        // identical JARs are loaded only once, the first one in the sorted order
+        this.duplicateSources.clear();
+        this.duplicateSources.putAll(SourceScanner.findDuplicates(sources, this.createScanListener(new HashMap<File, List<String>>())));
+        if (this.duplicateSources.isEmpty()) {
+            return sources;
+        }
+        if (this.logger.isLoggable(LogLevel.WARNING)) {
+            for (Map.Entry<File, File> entry : this.duplicateSources.entrySet()) {
+                this.logger.log(LogLevel.WARNING, LifecycleStage.DISCOVERED, (String) null, "Duplicate JAR skipped", entry.getKey() + " (same as " + entry.getValue() + ")", null);
+            }
+        }
+
+        // keep the order of the remaining sources
+        List<File> remaining = new ArrayList<File>(sources.size() - this.duplicateSources.size());
+        for (File file : sources) {
+            if (!this.duplicateSources.containsKey(file)) {
+                remaining.add(file);
+            }
+        }
+        return remaining;
+    }
+
+    private Map<String, PluginDefinition> resolveVersions(List<PluginDefinition> candidates) {
+        // pick one version per plugin, that satisfies every version range
+        long start = System.nanoTime();
+
+        // plugins that crashed the process stay out, until they are released or changed
+        for (Iterator<PluginDefinition> iterator = candidates.iterator(); iterator.hasNext();) {
+            PluginDefinition pluginDefinition = iterator.next();
+            if (this.journal.isQuarantined(pluginDefinition)) {
+                iterator.remove();
+                this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, pluginDefinition, "Plugin quarantined", null, null);
+                this.lifecyclePublisher.publish(LifecycleStage.FAILED, pluginDefinition, start, "Plugin quarantined", null);
+            }
+        }
+
+        DependencyResolver resolver = new DependencyResolver(candidates);
+        if (resolver.isSearchCapped()) {
+            this.logger.log(LogLevel.WARNING, LifecycleStage.RESOLVED, (String) null, "Version search gave up, falling back to stepwise downgrades", null, null);
+        }
+        for (Map.Entry<String, String> conflict : resolver.getConflicts().entrySet()) {
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, (String) null, "Plugin '" + conflict.getKey() + "' could not be resolved", conflict.getValue(), null);
+            this.lifecyclePublisher.publish(LifecycleStage.FAILED, conflict.getKey(), null, start, conflict.getValue(), null);
+        }
+        for (PluginDefinition pluginDefinition : resolver.getSelection().values()) {
+            this.lifecyclePublisher.publish(LifecycleStage.RESOLVED, pluginDefinition, start, null, null);
+        }
+        return resolver.getSelection();
+    }
+
+    public static List<File> findPluginSources(File folder) throws IOException {
+        final List<File> sources = new ArrayList<File>();
+
+        // folder must exist
+        if (!folder.isDirectory()) {
+            return sources;
+        }
+
+        // walk the folder and all subfolders
+        final Path root = folder.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                // hidden directories are ignored
+                String name = dir.getFileName().toString();
+                if (name.startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                // directories with ".plugin"-ending are exploded plugins
+                if (name.endsWith(".plugin")) {
+                    sources.add(dir.toFile());
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                // files without ".jar"-ending are ignored
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".jar")) {
+                    sources.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // keep the order stable
+        Collections.sort(sources);
+        return sources;
+    }
+
+    private Set<String> selectProfile(Collection<List<ClassInfo>> scans) {
+        if (this.startupProfile == null) {
+            return null;
+        }
+
+        // read names, dependencies and roles from the class files
+        Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>(), roles = new HashMap<String, Set<String>>();
+        for (List<ClassInfo> classInfos : scans) {
+            for (ClassInfo classInfo : classInfos) {
+                if (!classInfo.hasAnnotation(Plugin.class)) {
+                    continue;
+                }
+                String name = getSimpleName(classInfo.getName());
+                if (!dependencies.containsKey(name)) {
+                    dependencies.put(name, new HashSet<String>());
+                    roles.put(name, new HashSet<String>());
+                }
+                for (Object dependency : getAnnotationValues(classInfo, "dependencies")) {
+                    // "Name" or "Name:range"
+                    String text = (String) dependency;
+                    dependencies.get(name).add(text.indexOf(':') < 0 ? text.trim() : text.substring(0, text.indexOf(':')).trim());
+                }
+                for (Object role : getAnnotationValues(classInfo, "roles")) {
+                    roles.get(name).add((String) role);
+                }
+            }
+        }
+
+        Set<String> selection = this.startupProfile.select(dependencies, roles);
+        if (this.logger.isLoggable(LogLevel.INFO)) {
+            this.logger.log(LogLevel.INFO, LifecycleStage.DISCOVERED, (String) null, "Startup profile " + this.startupProfile.getName(), selection.size() + " of " + dependencies.size() + " plugins " + selection, null);
+        }
+        return selection;
+    }
+
+    private Set<String> getPluginNames(Collection<List<ClassInfo>> scans) {
+        Set<String> names = new HashSet<String>();
+        for (List<ClassInfo> classInfos : scans) {
+            for (ClassInfo classInfo : classInfos) {
+                if (classInfo.hasAnnotation(Plugin.class)) {
+                    names.add(getSimpleName(classInfo.getName()));
+                }
+            }
+        }
+        return names;
+    }
+
+    private static List<?> getAnnotationValues(ClassInfo classInfo, String element) {
+        Object value = classInfo.getAnnotationValue(Plugin.class, element);
+        return value instanceof List ? (List<?>) value : Collections.emptyList();
+    }
+
+    protected static String getSimpleName(String className) {
+        // same as Class.getSimpleName(), without loading the class
+        return className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+    }
+
+    private SourceScanner.Listener createScanListener(final Map<File, List<String>> resources) {
+        return new SourceScanner.Listener() {
+            @Override
+            public void resourceFound(File source, String name) {
+                // the names are collected, the index is updated once per scan
+                List<String> names = resources.get(source);
+                if (names == null) {
+                    names = new ArrayList<String>();
+                    resources.put(source, names);
+                }
+                names.add(name);
+            }
+
+            @Override
+            public void readFailed(File source, String name, IOException cause) {
+                PluginManager.this.logger.log(LogLevel.ERROR, LifecycleStage.DISCOVERED, (String) null, name != null ? "Could not read class" : "Could not read JAR", name != null ? name : source, cause);
+            }
+        };
+    }
+
+    private List<ClassInfo> scanSource(File file, Map<File, List<String>> resources) throws IOException {
+        // extensions and resources of the old classloader are replaced, a first scan has none
+        this.extensionIndex.unregisterAll(file);
+        this.resourceIndex.unregisterAll(file);
+
+        // read the classes without loading them
+        return SourceScanner.scan(file, this.createScanListener(resources));
+    }
+
+    private void loadSource(File file, Map<String, PluginDefinition> map) throws IOException {
+        Map<File, List<String>> resources = new HashMap<File, List<String>>();
+        this.loadSource(file, this.scanSource(file, resources), map, resources);
+        this.resourceIndex.registerAll(resources);
+    }
+
+    private void loadSource(File file, List<ClassInfo> candidates, Map<String, PluginDefinition> map, Map<File, List<String>> resources) throws IOException {
+        long start = System.nanoTime();
+
+        // sources without a plugin of the startup profile don't get a classloader
+        Set<String> selection = this.profileSelection;
+        if (selection != null && !this.hasSelectedPlugin(candidates, selection)) {
+            resources.remove(file);
+            this.logger.log(LogLevel.DEBUG, LifecycleStage.DISCOVERED, (String) null, "Source skipped by the startup profile", file, null);
+            return;
+        }
+
+        // create URL and classloader
+        URLClassLoader cl;
+        if (file.isDirectory()) {
+            cl = URLClassLoader.newInstance(new URL[] { file.toURI().toURL() });
+        } else {
+            cl = URLClassLoader.newInstance(new URL[] { new URL("jar:file:" + file.getAbsolutePath() + "!/") });
+        }
+
+        // index the classes by name
+        Map<String, ClassInfo> classInfos = new HashMap<String, ClassInfo>();
+        for (ClassInfo classInfo : candidates) {
+            classInfos.put(classInfo.getName(), classInfo);
+        }
+
+        // iterate over classes...
+        List<String> classNames = new ArrayList<String>();
+        for (ClassInfo classInfo : candidates) {
+            classNames.add(classInfo.getName());
+
+            // extensions are only recorded
+            if (classInfo.hasAnnotation(Extension.class)) {
+                Object priority = classInfo.getAnnotationValue(Extension.class, "priority");
+                this.extensionIndex.register(file, cl, classInfo.getName(), classInfo.getAllInterfaces(classInfos), priority != null ? Priority.valueOf((String) priority) : Priority.THIRD_MOST);
+            }
+
+            // only classes with the "Plugin"-Annotation are loaded, if they are part of the startup profile
+            String name = getSimpleName(classInfo.getName());
+            if (!classInfo.hasAnnotation(Plugin.class) || (selection != null && !selection.contains(name))) {
+                continue;
+            }
+            try {
+                // the class name must be unique
+                if (map.containsKey(name)) {
+                    throw new PluginExistsException("A plugin named '" + name + "' already exists!");
+                }
+
+                // the definition is read from the class file, the class is loaded when the plugin is enabled
+                PluginDefinition pluginDefinition = PluginDefinition.createPlugin(this, cl, classInfo, file);
+                if (pluginDefinition != null) {
+                    map.put(pluginDefinition.getName(), pluginDefinition);
+                    pluginDefinition.setPrefetchClasses(collectReferencedClasses(classInfo, classInfos));
+                    this.lifecyclePublisher.publish(LifecycleStage.DISCOVERED, pluginDefinition, start, file.getName(), null);
+                }
+            } catch (PluginExistsException print) {
+                this.logger.log(LogLevel.ERROR, LifecycleStage.DISCOVERED, (String) null, print.getMessage(), null, null);
+            }
+        }
+
+        // remember the classes
+        this.pluginClasses.put(file, Collections.unmodifiableList(classNames));
+    }
+
+    private boolean hasSelectedPlugin(List<ClassInfo> candidates, Set<String> selection) {
+        // libraries without plugins are always loaded
+        boolean hasPlugins = false;
+        for (ClassInfo classInfo : candidates) {
+            if (classInfo.hasAnnotation(Plugin.class)) {
+                if (selection.contains(getSimpleName(classInfo.getName()))) {
+                    return true;
+                }
+                hasPlugins = true;
+            }
+        }
+        return !hasPlugins;
+    }
+
+    private static String[] collectReferencedClasses(ClassInfo root, Map<String, ClassInfo> classInfos) {
+        // follow the references through the classes of the same source, nearest first
+        Set<String> referenced = new LinkedHashSet<String>();
+        referenced.add(root.getName());
+        List<ClassInfo> queue = new ArrayList<ClassInfo>();
+        queue.add(root);
+        for (int index = 0; index < queue.size(); index++) {
+            for (String className : queue.get(index).getReferencedClasses()) {
+                if (referenced.add(className)) {
+                    ClassInfo classInfo = classInfos.get(className);
+                    if (classInfo != null) {
+                        queue.add(classInfo);
+                    }
+                }
+            }
+        }
+
+        // the plugin class is loaded already
+        referenced.remove(root.getName());
+        return referenced.toArray(new String[referenced.size()]);
+    }
+
+    public boolean isPluginEnabled(String name) {
+        return this.hasPlugin(name) && (this.getLoadedPlugin(name).isEnabled() || this.remotePlugins.containsKey(name));
+    }
+
+    public boolean hasPlugin(String name) {
+        return this.loadedPlugins.containsKey(name);
+    }
+
+    public <T> T getPlugin(Class<? extends ExternalPlugin> clazz) {
+        PluginDefinition pluginDefinition = this.enabledPlugins.get(clazz.getSimpleName());
+        if (pluginDefinition != null) {
+            return pluginDefinition.getInstance(clazz);
+        }
+        this.checkLocal(clazz.getSimpleName());
+        return null;
+    }
+
+    private void checkLocal(String name) {
+        // there is no instance of a plugin in another JVM
+        if (this.isRemote(name)) {
+            throw new IllegalStateException("Plugin '" + name + "' runs in another JVM, use getRemotePlugin() with an interface!");
+        }
+    }
+
+    protected boolean isRemote(String name) {
+        // a plugin host has only its own plugin, everything else is in the parent
+        return this.host != null ? !this.host.getName().equals(name) : this.remotePlugins.containsKey(name);
+    }
+
+    protected Object getProxy(String name, Class<?> type) {
+        // plugins in another JVM are reachable through interfaces only
+        if (!this.isRemote(name)) {
+            return null;
+        }
+        if (!type.isInterface()) {
+            throw new IllegalStateException("Plugin '" + name + "' runs in another JVM, it can only be injected as an interface!");
+        }
+        return this.getRemotePlugin(name, type);
+    }
+
+    public <T> PluginHandle<T> getPluginHandle(Class<? extends ExternalPlugin> clazz) {
+        return this.getPluginHandle(clazz.getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> PluginHandle<T> getPluginHandle(String name) {
+        // handles are shared, so every handle is invalidated only once
+        PluginHandle<?> pluginHandle = this.pluginHandles.get(name);
+        if (pluginHandle == null) {
+            pluginHandle = new PluginHandle<T>(this, name);
+            PluginHandle<?> existing = this.pluginHandles.putIfAbsent(name, pluginHandle);
+            if (existing != null) {
+                pluginHandle = existing;
+            }
+        }
+        return (PluginHandle<T>) pluginHandle;
+    }
+
+    public <S> S getService(Class<S> service) {
+        return this.serviceRegistry.getService(service);
+    }
+
+    public <S> List<S> getServices(Class<S> service) {
+        return this.serviceRegistry.getServices(service);
+    }
+
+    protected ServiceRegistry getServiceRegistry() {
+        return this.serviceRegistry;
+    }
+
+    public <T> List<T> getExtensions(Class<T> type) {
+        return this.extensionIndex.getExtensions(type);
+    }
+
+    public byte[] getResource(String name) throws IOException {
+        return this.resourceIndex.getResource(name, null);
+    }
+
+    public boolean hasResource(String name) {
+        return this.resourceIndex.hasResource(name);
+    }
+
+    public void setResourceCacheSize(long maxBytes, int maxEntryBytes) {
+        this.resourceIndex.setCacheSize(maxBytes, maxEntryBytes);
+    }
+
+    protected ResourceIndex getResourceIndex() {
+        return this.resourceIndex;
+    }
+
+    public void setTaskExecutor(Executor executor) {
+        this.taskScheduler.setExecutor(executor);
+    }
+
+    protected CheckpointStore getCheckpointStore() {
+        return this.checkpointStore;
+    }
+
+    protected TaskScheduler getTaskScheduler() {
+        return this.taskScheduler;
+    }
+
+    public EventBus getEventBus() {
+        return this.eventBus;
+    }
+
+    public void setEventExecutor(Executor executor) {
+        this.eventBus.setExecutor(executor);
+    }
+
+    public void setEventMetering(boolean metered) {
+        // account the CPU time and allocations of event handlers to their plugins
+        this.eventBus.setMetered(metered);
+    }
+
+    public void setClassPrefetch(boolean enabled, boolean initialize) {
+        // initialize runs the static initializers on the prefetch threads
+        this.classPrefetcher.setEnabled(enabled, initialize);
+    }
+
+    public void setPrefetchExecutor(Executor executor) {
+        this.classPrefetcher.setExecutor(executor);
+    }
+
+    public LifecyclePublisher getLifecyclePublisher() {
+        return this.lifecyclePublisher;
+    }
+
+    public void setLifecycleExecutor(Executor executor) {
+        this.lifecyclePublisher.setExecutor(executor);
+    }
+
+    public <T> PluginLease<T> leasePlugin(Class<? extends ExternalPlugin> clazz) {
+        while (true) {
+            PluginDefinition pluginDefinition = this.enabledPlugins.get(clazz.getSimpleName());
+            if (pluginDefinition == null) {
+                this.checkLocal(clazz.getSimpleName());
+                return null;
+            }
+            if (pluginDefinition.acquire()) {
+                return new PluginLease<T>(pluginDefinition);
+            }
+            // the plugin is disabled and wasn't swapped meanwhile
+            if (this.enabledPlugins.get(clazz.getSimpleName()) == pluginDefinition) {
+                return null;
+            }
+        }
+    }
+
+    protected PluginDefinition getLoadedPlugin(String name) {
+        return this.loadedPlugins.get(name);
+    }
+
+    protected PluginDefinition getEnabledPlugin(String name) {
+        return this.enabledPlugins.get(name);
+    }
+
+    private void enablePlugin(PluginDefinition pluginDefinition) {
+        // catch null
+        if (pluginDefinition == null) {
+            return;
+        }
+
+        try {
+            // check for enabled plugins with the same name
+            if (this.enabledPlugins.containsKey(pluginDefinition.getName())) {
+                // if the name is the same, but the objects are different =>
+                // throw an exception
+                if (!this.enabledPlugins.get(pluginDefinition.getName()).equals(pluginDefinition)) {
+                    throw new PluginExistsException("A different plugin named '" + pluginDefinition.getName() + "' already exists!");
+                } else {
+                    return;
+                }
+            }
+
+            // enable plugin, only if it is disabled
+            if (!pluginDefinition.isEnabled()) {
+                long start = System.nanoTime();
+                this.lifecyclePublisher.publish(LifecycleStage.ENABLING, pluginDefinition, start, null, null);
+                boolean enabled;
+                this.journal.begin(pluginDefinition);
+                try {
+                    enabled = pluginDefinition.enable();
+                } finally {
+                    this.journal.end(pluginDefinition);
+                }
+                if (enabled) {
+                    this.enabledPlugins.put(pluginDefinition.getName(), pluginDefinition);
+                    this.eventBus.register(pluginDefinition);
+                    this.logger.log(LogLevel.INFO, LifecycleStage.ENABLED, pluginDefinition, "Plugin enabled", null, null);
+                    this.lifecyclePublisher.publish(LifecycleStage.ENABLED, pluginDefinition, start, null, null);
+                } else {
+                    this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, pluginDefinition, "Plugin not enabled", null, null);
+                    this.lifecyclePublisher.publish(LifecycleStage.FAILED, pluginDefinition, start, "Plugin not enabled", null);
+                }
+            }
+        } catch (PluginExistsException print) {
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, pluginDefinition, print.getMessage(), null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.FAILED, pluginDefinition, System.nanoTime(), print.getMessage(), print);
+        }
+    }
+
+    public void enablePlugins() {
+        // disable active plugins
+        this.disablePlugins();
+
+        // check for missing & circular dependencies
+        this.resolveDependencies();
+
+        // enable all plugins, dependencies first
+        this.enablePlugins(this.pluginGraph.getTopologicalOrder());
+    }
+
+    public void enablePlugins(Collection<String> names) {
+        // check for missing & circular dependencies, the dependencies of a plugin host are in the parent
+        if (this.host == null) {
+            this.resolveDependencies();
+        }
+
+        // enable the plugins and their dependencies, dependencies first
+        List<PluginDefinition> roots = new ArrayList<PluginDefinition>(names.size());
+        for (String name : names) {
+            PluginDefinition pluginDefinition = this.getLoadedPlugin(name);
+            if (pluginDefinition != null) {
+                roots.add(pluginDefinition);
+            }
+        }
+        this.enablePlugins(this.host == null ? this.pluginGraph.getDependencyClosure(roots) : roots);
+    }
+
+    private void enablePlugins(List<PluginDefinition> list) {
+        // load the classes in the background, while the first plugins are enabled
+        List<PluginDefinition> prefetchList = new ArrayList<PluginDefinition>(list.size());
+        for (PluginDefinition pluginDefinition : list) {
+            if (!this.outOfProcess.contains(pluginDefinition.getName())) {
+                prefetchList.add(pluginDefinition);
+            }
+        }
+        this.classPrefetcher.prefetch(prefetchList);
+
+        // enable plugins
+        List<PluginDefinition> enableList = new ArrayList<PluginDefinition>(list.size());
+        for (PluginDefinition pluginDefinition : list) {
+            // some plugins run in their own JVM
+            if (this.outOfProcess.contains(pluginDefinition.getName())) {
+                this.enableRemotePlugin(pluginDefinition);
+                continue;
+            }
+            this.enablePlugin(pluginDefinition);
+            if (this.enabledPlugins.get(pluginDefinition.getName()) == pluginDefinition) {
+                enableList.add(pluginDefinition);
+            }
+        }
+
+        // remember the counters before enabling
+        long[] cpuTimes = new long[enableList.size()], allocatedBytes = new long[enableList.size()];
+        for (int index = 0; index < cpuTimes.length; index++) {
+            cpuTimes[index] = enableList.get(index).getCpuTime();
+            allocatedBytes[index] = enableList.get(index).getAllocatedBytes();
+        }
+
+        // inject dependencies
+        for (PluginDefinition pluginDefinition : enableList) {
+            pluginDefinition.injectDependencies();
+        }
+
+        // call postEnable-methods
+        for (PluginDefinition pluginDefinition : enableList) {
+            this.journal.begin(pluginDefinition);
+            try {
+                pluginDefinition.callPostEnableMethods();
+            } finally {
+                this.journal.end(pluginDefinition);
+            }
+        }
+
+        // call afterInitialization-Methods
+        for (PluginDefinition pluginDefinition : enableList) {
+            this.journal.begin(pluginDefinition);
+            try {
+                pluginDefinition.afterInitializationCalls();
+            } finally {
+                this.journal.end(pluginDefinition);
+            }
+        }
+
+        // the enabled plugins are the new known-good set
+        this.journal.recordKnownGood(this.enabledPlugins.values());
+
+        // check the budgets
+        for (int index = 0; index < cpuTimes.length; index++) {
+            this.checkEnableBudget(enableList.get(index), cpuTimes[index], allocatedBytes[index]);
+        }
+
+        // warm up in the background
+        for (PluginDefinition pluginDefinition : enableList) {
+            this.warmUp(pluginDefinition);
+        }
+    }
+
+    private void warmUp(final PluginDefinition pluginDefinition) {
+        // plugins without warmup-methods are ready at once
+        if (!this.warmupEnabled || !pluginDefinition.hasWarmup()) {
+            pluginDefinition.setReady(true);
+            return;
+        }
+        this.getWarmupExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                pluginDefinition.warmUp();
+                if (pluginDefinition.isEnabled()) {
+                    pluginDefinition.setReady(true);
+                    if (PluginManager.this.logger.isLoggable(LogLevel.INFO)) {
+                        PluginManager.this.logger.log(LogLevel.INFO, LifecycleStage.READY, pluginDefinition, "Plugin ready", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms warmup", null);
+                    }
+                    PluginManager.this.lifecyclePublisher.publish(LifecycleStage.READY, pluginDefinition, start, null, null);
+                }
+            }
+        });
+    }
+
+    public boolean isPluginReady(String name) {
+        // plugins hosted out of process warm up in their own JVM
+        PluginDefinition pluginDefinition = this.enabledPlugins.get(name);
+        return pluginDefinition != null ? pluginDefinition.isReady() : this.remotePlugins.containsKey(name);
+    }
+
+    public void setWarmupEnabled(boolean warmupEnabled) {
+        this.warmupEnabled = warmupEnabled;
+    }
+
+    public synchronized void setWarmupExecutor(Executor executor) {
+        this.warmupExecutor = executor;
+    }
+
+    private synchronized Executor getWarmupExecutor() {
+        // bounded, warmups must not starve the plugins
+        if (this.warmupExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            this.warmupExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PluginManager-Warmup");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return this.warmupExecutor;
+    }
+
+    private void enableRemotePlugin(PluginDefinition pluginDefinition) {
+        if (this.remotePlugins.containsKey(pluginDefinition.getName())) {
+            return;
+        }
+        RemotePlugin remotePlugin = new RemotePlugin(this, pluginDefinition);
+        long start = System.nanoTime();
+        this.lifecyclePublisher.publish(LifecycleStage.ENABLING, pluginDefinition, start, "out of process", null);
+        try {
+            remotePlugin.start(this.pluginFolder, this.hostJvmOptions, TimeUnit.MILLISECONDS.toNanos(this.hostTimeout));
+            this.remotePlugins.put(pluginDefinition.getName(), remotePlugin);
+            this.eventBus.register(pluginDefinition, remotePlugin.getEventTypes(), remotePlugin.getEventPriorities(), remotePlugin.getEventForwarder());
+            this.logger.log(LogLevel.INFO, LifecycleStage.ENABLED, pluginDefinition, "Plugin enabled out of process", null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.ENABLED, pluginDefinition, start, "out of process", null);
+        } catch (IOException print) {
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, pluginDefinition, "Plugin not enabled", null, print);
+            this.lifecyclePublisher.publish(LifecycleStage.FAILED, pluginDefinition, start, "Plugin not enabled", print);
+        }
+    }
+
+    private boolean disableRemotePlugin(PluginDefinition pluginDefinition) {
+        RemotePlugin remotePlugin = this.remotePlugins.remove(pluginDefinition.getName());
+        if (remotePlugin == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        this.lifecyclePublisher.publish(LifecycleStage.DISABLING, pluginDefinition, start, "out of process", null);
+        this.eventBus.unregister(pluginDefinition);
+        remotePlugin.stop(TimeUnit.MILLISECONDS.toNanos(this.hostTimeout));
+        this.logger.log(LogLevel.INFO, LifecycleStage.DISABLED, pluginDefinition, "Plugin disabled out of process", null, null);
+        this.lifecyclePublisher.publish(LifecycleStage.DISABLED, pluginDefinition, start, "out of process", null);
+        return true;
+    }
+
+    public void setOutOfProcess(String name, boolean outOfProcess) {
+        // takes effect, when the plugin is enabled the next time
+        if (outOfProcess) {
+            this.outOfProcess.add(name);
+        } else {
+            this.outOfProcess.remove(name);
+        }
+    }
+
+    public void setHostJvmOptions(String... options) {
+        this.hostJvmOptions = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(options)));
+    }
+
+    public void setHostTimeout(long hostTimeout) {
+        this.hostTimeout = hostTimeout;
+    }
+
+    public <T> T getRemotePlugin(String name, Class<T> type) {
+        // in a plugin host, the plugins of the parent are remote
+        if (this.host != null) {
+            return this.isRemote(name) ? this.host.createProxy(name, type) : null;
+        }
+        RemotePlugin remotePlugin = this.remotePlugins.get(name);
+        return remotePlugin != null ? remotePlugin.createProxy(type) : null;
+    }
+
+    protected Object callPlugin(String name, String method, String[] typeNames, Object[] args) throws Throwable {
+        // calls of plugin hosts to the plugins of this JVM, or on to another plugin host
+        RemotePlugin remotePlugin = this.remotePlugins.get(name);
+        if (remotePlugin != null) {
+            return remotePlugin.call(method, typeNames, args);
+        }
+        PluginDefinition pluginDefinition = this.enabledPlugins.get(name);
+        if (pluginDefinition == null || !pluginDefinition.acquire()) {
+            throw new IllegalStateException("Plugin '" + name + "' is not enabled!");
+        }
+        try {
+            return pluginDefinition.invoke(method, IpcMessage.resolveTypes(typeNames, pluginDefinition.getClassLoader()), args);
+        } finally {
+            pluginDefinition.release();
+        }
+    }
+
+    private void checkEnableBudget(PluginDefinition pluginDefinition, long cpuTimeBefore, long allocatedBytesBefore) {
+        long cpuTime = pluginDefinition.getCpuTime() - cpuTimeBefore;
+        long allocatedBytes = pluginDefinition.getAllocatedBytes() - allocatedBytesBefore;
+        boolean overBudget = (this.enableCpuBudget > 0 && cpuTime > this.enableCpuBudget) || (this.enableAllocationBudget > 0 && allocatedBytes > this.enableAllocationBudget);
+        pluginDefinition.setEnableUsage(cpuTime, allocatedBytes, overBudget);
+        if (overBudget) {
+            this.logger.log(LogLevel.WARNING, LifecycleStage.ENABLED, (String) null, "Plugin exceeded the enable budget", pluginDefinition.getUsage(), null);
+        }
+    }
+
+    public void setEnableBudget(long cpuTime, long allocatedBytes) {
+        // 0 disables the budget
+        this.enableCpuBudget = cpuTime;
+        this.enableAllocationBudget = allocatedBytes;
+    }
+
+    public PluginUsage getPluginUsage(String name) {
+        PluginDefinition pluginDefinition = this.getLoadedPlugin(name);
+        return pluginDefinition != null ? pluginDefinition.getUsage() : null;
+    }
+
+    public List<CacheStats> getCacheStats(String name) {
+        PluginDefinition pluginDefinition = this.getLoadedPlugin(name);
+        return pluginDefinition != null ? pluginDefinition.getCacheStats() : Collections.<CacheStats> emptyList();
+    }
+
+    public List<PluginUsage> getUsageReport(Comparator<PluginUsage> comparator) {
+        List<PluginUsage> report = new ArrayList<PluginUsage>(this.loadedPlugins.size());
+        for (PluginDefinition pluginDefinition : this.loadedPlugins.values()) {
+            report.add(pluginDefinition.getUsage());
+        }
+        Collections.sort(report, comparator);
+        return report;
+    }
+
+    private void resolveDependencies() {
+        // one pass finds every missing & circular dependency, including the plugins depending on them.
+        // otherwise it would be possible to have plugins that will be enabled, if they have a missing/circular dependency
+        PluginGraph pluginGraph = new PluginGraph(this.loadedPlugins.values());
+        boolean removed = false;
+        for (MissingDependencyException print : pluginGraph.getMissingDependencies()) {
+            // print the error
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, (String) null, print.getMessage(), null, null);
+
+            // remove the plugin
+            removed |= this.removeBrokenPlugin(print.getPluginDefinition(), print.getMessage(), print);
+        }
+        for (CircularDependencyException print : pluginGraph.getCircularDependencies()) {
+            // print the error
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, (String) null, print.getMessage(), null, null);
+
+            // remove the plugins
+            removed |= this.removeBrokenPlugin(print.getFirstPluginDefinition(), print.getMessage(), print);
+            removed |= this.removeBrokenPlugin(print.getSecondPluginDefinition(), print.getMessage(), print);
+        }
+
+        // the graph is built again only without the removed plugins
+        this.pluginGraph = removed ? new PluginGraph(this.loadedPlugins.values()) : pluginGraph;
+    }
+
+    private boolean removeBrokenPlugin(PluginDefinition pluginDefinition, String message, Exception cause) {
+        // a plugin on several cycles fails only once
+        if (this.loadedPlugins.get(pluginDefinition.getName()) != pluginDefinition) {
+            return false;
+        }
+        this.loadedPlugins.remove(pluginDefinition.getName());
+        this.lifecyclePublisher.publish(LifecycleStage.FAILED, pluginDefinition, System.nanoTime(), message, cause);
+        return true;
+    }
+
+    public void disablePlugins() {
+        // disable in reverse order, dependents first, local and out-of-process plugins alike
+        List<PluginDefinition> active = new ArrayList<PluginDefinition>(this.enabledPlugins.values());
+        for (RemotePlugin remotePlugin : this.remotePlugins.values()) {
+            active.add(remotePlugin.getPluginDefinition());
+        }
+        List<PluginDefinition> reversed = new PluginGraph(active).getTopologicalOrder();
+        Collections.reverse(reversed);
+
+        // call preDisable-methods, a plugin host calls them while it stops
+        for (PluginDefinition pluginDefinition : reversed) {
+            if (!this.disableRemotePlugin(pluginDefinition)) {
+                this.callPreDisableMethods(pluginDefinition);
+            }
+        }
+
+        // disable all plugins
+        for (PluginDefinition pluginDefinition : reversed) {
+            if (this.enabledPlugins.get(pluginDefinition.getName()) == pluginDefinition) {
+                this.disablePlugin(pluginDefinition);
+            }
+        }
+
+        // clear list
+        this.enabledPlugins.clear();
+    }
+
+    private void callPreDisableMethods(PluginDefinition pluginDefinition) {
+        if (pluginDefinition.isEnabled()) {
+            this.lifecyclePublisher.publish(LifecycleStage.DISABLING, pluginDefinition, System.nanoTime(), null, null);
+        }
+        pluginDefinition.callPreDisableMethods();
+
+        // checkpoints written by the preDisable-methods are complete now
+        this.checkpointStore.commit(pluginDefinition);
+    }
+
+    private void disablePlugin(PluginDefinition pluginDefinition) {
+        if (this.disableRemotePlugin(pluginDefinition)) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (pluginDefinition.disable()) {
+            this.logger.log(LogLevel.INFO, LifecycleStage.DISABLED, pluginDefinition, "Plugin disabled", null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.DISABLED, pluginDefinition, start, null, null);
+        } else {
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, pluginDefinition, "Plugin not disabled", null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.FAILED, pluginDefinition, start, "Plugin not disabled", null);
+        }
+        this.enabledPlugins.remove(pluginDefinition.getName());
+    }
+
+    public void reloadLoadedPlugins() {
+        // disable plugins
+        this.disablePlugins();
+
+        // enable plugins
+        this.enablePlugins();
+    }
+
+    public void reloadAllPlugins() throws IOException {
+        // disable plugins
+        this.disablePlugins();
+
+        // the reload is recorded as the last start
+        this.lifecyclePublisher.beginStart();
+        try {
+            // clear old maps
+            this.loadedPlugins.clear();
+            this.extensionIndex.clear();
+            this.resourceIndex.clear();
+
+            // search plugins
+            this.loadedPlugins.putAll(this.resolveVersions(this.loadPlugins(this.pluginFolder, false)));
+
+            // enable plugins
+            this.enablePlugins();
+        } finally {
+            this.lifecyclePublisher.endStart();
+        }
+    }
+
+    public void shutdown() {
+        // subscribers are completed after the last DISABLED event
+        this.disablePlugins();
+        this.lifecyclePublisher.complete();
+    }
+
+    public boolean reloadPlugin(String name) {
+        // the plugin must be known
+        PluginDefinition pluginDefinition = this.getLoadedPlugin(name);
+        if (pluginDefinition == null) {
+            return false;
+        }
+
+        // reload the plugin and everything depending on it
+        this.resolveDependencies();
+        this.reloadClosure(this.pluginGraph.getDependentClosure(Collections.singleton(pluginDefinition)), new HashMap<String, PluginDefinition>(), null);
+        return true;
+    }
+
+    public boolean reloadPlugin(String name, boolean reloadJar) throws IOException {
+        // without re-reading the JAR, the classes are reused
+        if (!reloadJar) {
+            return this.reloadPlugin(name);
+        }
+
+        // the plugin must be known
+        PluginDefinition pluginDefinition = this.getLoadedPlugin(name);
+        if (pluginDefinition == null) {
+            return false;
+        }
+
+        // re-read the JAR with a fresh classloader
+        File file = pluginDefinition.getPluginFile();
+        Map<String, PluginDefinition> reloaded = new HashMap<String, PluginDefinition>();
+        if (file.exists()) {
+            this.loadSource(file, reloaded);
+        }
+
+        // every plugin of the old JAR is reloaded
+        List<PluginDefinition> roots = new ArrayList<PluginDefinition>();
+        for (PluginDefinition loadedPlugin : this.loadedPlugins.values()) {
+            if (file.equals(loadedPlugin.getPluginFile())) {
+                roots.add(loadedPlugin);
+            }
+        }
+
+        // reload the plugins and everything depending on them
+        this.resolveDependencies();
+        this.reloadClosure(this.pluginGraph.getDependentClosure(roots), reloaded, file);
+        return true;
+    }
+
+    private void reloadClosure(List<PluginDefinition> closure, Map<String, PluginDefinition> replacements, File reloadedFile) {
+        long start = System.nanoTime();
+
+        // remember the enabled plugins
+        Set<String> wasEnabled = new HashSet<String>();
+        for (PluginDefinition pluginDefinition : closure) {
+            if (this.enabledPlugins.containsKey(pluginDefinition.getName()) || this.remotePlugins.containsKey(pluginDefinition.getName())) {
+                wasEnabled.add(pluginDefinition.getName());
+            }
+        }
+
+        // disable in reverse order, dependents first
+        List<PluginDefinition> reversed = new ArrayList<PluginDefinition>(closure);
+        Collections.reverse(reversed);
+        for (PluginDefinition pluginDefinition : reversed) {
+            if (wasEnabled.contains(pluginDefinition.getName())) {
+                this.callPreDisableMethods(pluginDefinition);
+            }
+        }
+        for (PluginDefinition pluginDefinition : reversed) {
+            if (wasEnabled.contains(pluginDefinition.getName())) {
+                this.disablePlugin(pluginDefinition);
+            }
+        }
+
+        // replace the definitions with fresh instances
+        // plugins of a re-read JAR are taken from the new classloader, all others are instantiated again
+        for (PluginDefinition pluginDefinition : closure) {
+            this.loadedPlugins.remove(pluginDefinition.getName());
+            PluginDefinition replacement = replacements.remove(pluginDefinition.getName());
+            if (replacement == null && !pluginDefinition.getPluginFile().equals(reloadedFile)) {
+                replacement = pluginDefinition.copy();
+            }
+            if (replacement != null) {
+                this.loadedPlugins.put(replacement.getName(), replacement);
+            }
+        }
+
+        // plugins that are new in a re-read JAR
+        for (PluginDefinition pluginDefinition : replacements.values()) {
+            if (!this.loadedPlugins.containsKey(pluginDefinition.getName())) {
+                this.loadedPlugins.put(pluginDefinition.getName(), pluginDefinition);
+                wasEnabled.add(pluginDefinition.getName());
+            }
+        }
+
+        // the definitions have changed, so the dependencies must be checked again
+        this.resolveDependencies();
+
+        // enable in topological order, dependencies first
+        List<PluginDefinition> enableList = new ArrayList<PluginDefinition>();
+        for (String name : wasEnabled) {
+            PluginDefinition pluginDefinition = this.getLoadedPlugin(name);
+            if (pluginDefinition != null) {
+                enableList.add(pluginDefinition);
+            }
+        }
+        this.enablePlugins(this.pluginGraph.sortByDependencies(enableList));
+        for (PluginDefinition pluginDefinition : enableList) {
+            if (this.isPluginEnabled(pluginDefinition.getName())) {
+                this.lifecyclePublisher.publish(LifecycleStage.RELOADED, pluginDefinition, start, null, null);
+            }
+        }
+    }
+
+    public boolean swapPlugin(String name) throws IOException {
+        // only enabled plugins can be swapped
+        PluginDefinition swapped = this.enabledPlugins.get(name);
+        if (swapped == null) {
+            return false;
+        }
+
+        // load the new version next to the old one
+        File file = swapped.getPluginFile();
+        Map<String, PluginDefinition> reloaded = new HashMap<String, PluginDefinition>();
+        if (file.exists()) {
+            this.loadSource(file, reloaded);
+        }
+
+        // the new classloader defines every class of the JAR again, so plugins of the same JAR
+        // would see each other with foreign types: every enabled plugin of the JAR is swapped together
+        Map<String, PluginDefinition> oldDefinitions = new HashMap<String, PluginDefinition>();
+        Map<String, PluginDefinition> staged = new HashMap<String, PluginDefinition>();
+        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
+            if (!file.equals(pluginDefinition.getPluginFile())) {
+                continue;
+            }
+            PluginDefinition newDefinition = reloaded.get(pluginDefinition.getName());
+            if (newDefinition == null) {
+                this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, swapped, "Plugin not swapped, the new JAR is missing a plugin", pluginDefinition.getName(), null);
+                return false;
+            }
+            oldDefinitions.put(pluginDefinition.getName(), pluginDefinition);
+            staged.put(newDefinition.getName(), newDefinition);
+        }
+
+        // the new versions must find their dependencies, and the remaining plugins must accept the new versions
+        for (PluginDefinition newDefinition : staged.values()) {
+            String[] dependencies = newDefinition.getDependencies();
+            for (int index = 0; index < dependencies.length; index++) {
+                PluginDefinition dependency = staged.get(dependencies[index]);
+                if (dependency == null) {
+                    dependency = this.enabledPlugins.get(dependencies[index]);
+                }
+                if (dependency == null || !newDefinition.getDependencyRanges()[index].contains(dependency.getParsedVersion())) {
+                    this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, newDefinition, "Plugin not swapped, missing depending plugin", dependencies[index] + ":" + newDefinition.getDependencyRanges()[index], null);
+                    return false;
+                }
+            }
+        }
+        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
+            if (staged.containsKey(pluginDefinition.getName())) {
+                continue;
+            }
+            String[] dependencies = pluginDefinition.getDependencies();
+            for (int index = 0; index < dependencies.length; index++) {
+                PluginDefinition newDefinition = staged.get(dependencies[index]);
+                if (newDefinition != null && !pluginDefinition.getDependencyRanges()[index].contains(newDefinition.getParsedVersion())) {
+                    this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, newDefinition, "Plugin not swapped, rejected by a dependent plugin", pluginDefinition.getName(), null);
+                    return false;
+                }
+            }
+        }
+
+        // fully enable the new versions, dependencies first, while the old ones keep serving
+        long start = System.nanoTime();
+        List<PluginDefinition> newDefinitions = new PluginGraph(staged.values()).getTopologicalOrder();
+        List<PluginDefinition> started = new ArrayList<PluginDefinition>();
+        boolean succeeded = true;
+        for (PluginDefinition newDefinition : newDefinitions) {
+            this.journal.begin(newDefinition);
+            try {
+                succeeded = newDefinition.enable();
+                if (succeeded) {
+                    started.add(newDefinition);
+                    succeeded = newDefinition.injectDependencies(staged);
+                    succeeded &= newDefinition.importState(oldDefinitions.get(newDefinition.getName()).exportState());
+                    succeeded &= newDefinition.callPostEnableMethods();
+                    succeeded &= newDefinition.afterInitializationCalls();
+                }
+            } finally {
+                this.journal.end(newDefinition);
+            }
+            if (!succeeded) {
+                break;
+            }
+        }
+
+        // on failure, the old versions simply keep serving
+        if (!succeeded) {
+            Collections.reverse(started);
+            for (PluginDefinition newDefinition : started) {
+                newDefinition.callPreDisableMethods();
+                newDefinition.disable();
+            }
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, swapped, "Plugin not swapped, the new version failed to start", null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.FAILED, swapped, start, "Plugin not swapped", null);
+            return false;
+        }
+        for (PluginDefinition newDefinition : newDefinitions) {
+            this.warmUp(newDefinition);
+        }
+
+        // redirect lookups and events, disabled plugins of the JAR are taken from the new classloader as well
+        for (PluginDefinition newDefinition : reloaded.values()) {
+            PluginDefinition loaded = this.loadedPlugins.get(newDefinition.getName());
+            if (loaded != null && file.equals(loaded.getPluginFile())) {
+                this.loadedPlugins.put(newDefinition.getName(), newDefinition);
+            }
+        }
+        for (PluginDefinition newDefinition : newDefinitions) {
+            PluginDefinition oldDefinition = oldDefinitions.get(newDefinition.getName());
+            this.enabledPlugins.put(newDefinition.getName(), newDefinition);
+            this.eventBus.replace(oldDefinition, newDefinition);
+            oldDefinition.invalidate();
+            this.logger.log(LogLevel.INFO, LifecycleStage.SWAPPED, newDefinition, "Plugin swapped", null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.SWAPPED, newDefinition, start, null, null);
+        }
+
+        // dependents must point to the new definitions, their cached values may stem from the old ones
+        this.resolveDependencies();
+        for (PluginDefinition pluginDefinition : this.enabledPlugins.values()) {
+            if (staged.containsKey(pluginDefinition.getName())) {
+                continue;
+            }
+            for (String swappedName : staged.keySet()) {
+                if (pluginDefinition.injects(swappedName)) {
+                    pluginDefinition.injectDependencies();
+                    break;
+                }
+            }
+            for (String dependency : pluginDefinition.getDependencies()) {
+                if (staged.containsKey(dependency)) {
+                    pluginDefinition.invalidateCaches();
+                    break;
+                }
+            }
+        }
+
+        // retire the old versions, dependents first, once all leases are returned
+        Collections.reverse(newDefinitions);
+        for (PluginDefinition newDefinition : newDefinitions) {
+            PluginDefinition oldDefinition = oldDefinitions.get(newDefinition.getName());
+            if (!oldDefinition.retire(this.drainTimeout)) {
+                this.logger.log(LogLevel.WARNING, LifecycleStage.DISABLING, oldDefinition, "Plugin still in use after the drain timeout", null, null);
+            }
+            start = System.nanoTime();
+            this.callPreDisableMethods(oldDefinition);
+            oldDefinition.disable();
+            this.logger.log(LogLevel.INFO, LifecycleStage.DISABLED, oldDefinition, "Plugin retired", null, null);
+            this.lifecyclePublisher.publish(LifecycleStage.DISABLED, oldDefinition, start, "Plugin retired", null);
+        }
+        return true;
+    }
+
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public void setLogSink(LogSink logSink) {
+        this.logger.setLogSink(logSink);
+    }
+
+    public LogSink getLogSink() {
+        return this.logger.getLogSink();
+    }
+
+    protected PluginLogger getLogger() {
+        return this.logger;
+    }
+
+    public StartupProfile getStartupProfile() {
+        return this.startupProfile;
+    }
+
+    public Set<String> getQuarantinedPlugins() {
+        return this.journal.getQuarantinedPlugins();
+    }
+
+    public boolean releaseQuarantine(String name) {
+        // takes effect with the next reload
+        return this.journal.release(name);
+    }
+
+    public Map<File, File> getDuplicateSources() {
+        return Collections.unmodifiableMap(this.duplicateSources);
+    }
+
+    public Map<File, List<String>> getPluginClasses() {
+        return Collections.unmodifiableMap(this.pluginClasses);
+    }
+
+    public File getPluginFolder() {
+        return this.pluginFolder;
+    }
+
+    public void listPlugins() {
+        System.out.println("Plugins found: " + this.loadedPlugins.size());
+        for (PluginDefinition pluginDefinition : this.loadedPlugins.values()) {
+            System.out.println("-> " + pluginDefinition.getName() + " [ v" + pluginDefinition.getVersion() + " ]");
+        }
+    }
+
+}
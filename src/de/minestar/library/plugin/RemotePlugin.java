@@ -0,0 +1,320 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.minestar.library.plugin.ipc.IpcChannel;
+import de.minestar.library.plugin.ipc.IpcMessage;
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.units.Priority;
+
+public class RemotePlugin {
+
+    private static final int CAPACITY = 1 << 20;
+    private static final long POLL_INTERVAL = 10;
+    private static final long SLICE = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final PluginManager pluginManager;
+    private final PluginDefinition pluginDefinition;
+    private final PluginLogger logger;
+    private final AtomicLong droppedEvents;
+    private File channelDirectory;
+    private volatile Process process;
+    private volatile IpcChannel channel, callbacks;
+    private volatile long timeout;
+    private volatile boolean stopping;
+    private volatile Object incoming;
+    private Class<?>[] eventTypes = new Class<?>[0];
+    private Priority[] eventPriorities = new Priority[0];
+
+    protected RemotePlugin(PluginManager pluginManager, PluginDefinition pluginDefinition) {
+        this.pluginManager = pluginManager;
+        this.pluginDefinition = pluginDefinition;
+        this.logger = pluginManager.getLogger();
+        this.droppedEvents = new AtomicLong();
+    }
+
+    protected synchronized void start(File pluginFolder, List<String> jvmOptions, long timeout) throws IOException {
+        // the rings exist before the child maps them, shared memory is preferred over a disk
+        File sharedMemory = new File("/dev/shm");
+        File baseDirectory = sharedMemory.isDirectory() ? sharedMemory : new File(System.getProperty("java.io.tmpdir"));
+        this.channelDirectory = Files.createTempDirectory(baseDirectory.toPath(), "plugin-host-").toFile();
+        this.timeout = timeout;
+        String name = this.pluginDefinition.getName();
+        this.channel = IpcChannel.create(this.channelDirectory, name, CAPACITY, true);
+        this.channel.setClassLoader(this.pluginDefinition.getClassLoader());
+        this.callbacks = IpcChannel.create(this.channelDirectory, name + PluginHost.CALLBACKS, CAPACITY, false);
+        this.callbacks.setClassLoader(this.pluginDefinition.getClassLoader());
+
+        // same JVM, same classpath
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PluginHost.class.getName());
+        command.add(pluginFolder.getAbsolutePath());
+        command.add(this.pluginDefinition.getPluginFile().getAbsolutePath());
+        command.add(name);
+        command.add(this.channelDirectory.getAbsolutePath());
+        command.add(Long.toString(TimeUnit.NANOSECONDS.toMillis(timeout)));
+
+        // stdin stays open, the child exits when it is closed
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        this.process = processBuilder.start();
+        this.watch(this.process);
+        this.serveCallbacks();
+
+        // enable the plugin in the child, it answers with its event subscriptions
+        try {
+            this.checkRunning();
+            this.readSubscriptions((String[]) this.channel.request(IpcMessage.ENABLE, name, null, timeout));
+        } catch (Throwable cause) {
+            this.destroy();
+            throw new IOException("Plugin '" + name + "' could not be started out of process!", cause);
+        }
+    }
+
+    protected void stop(long timeout) {
+        if (this.process == null) {
+            return;
+        }
+        this.stopping = true;
+        try {
+            // the child calls the preDisable-methods and exits, a stuck call delays this by the timeout at most
+            long deadline = System.nanoTime() + timeout;
+            this.checkRunning();
+            this.channel.request(IpcMessage.DISABLE, this.pluginDefinition.getName(), null, timeout);
+            while (this.isAlive() && System.nanoTime() < deadline) {
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } catch (Throwable print) {
+            this.logger.log(LogLevel.WARNING, LifecycleStage.DISABLING, this.pluginDefinition, "Plugin host didn't stop", null, print);
+        } finally {
+            this.destroy();
+        }
+    }
+
+    private void readSubscriptions(String[] subscriptions) {
+        // pairs of event type and priority
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        List<Priority> priorities = new ArrayList<Priority>();
+        for (int index = 0; index + 1 < subscriptions.length; index += 2) {
+            try {
+                types.add(Class.forName(subscriptions[index], false, this.pluginDefinition.getClassLoader()));
+                priorities.add(Priority.valueOf(subscriptions[index + 1]));
+            } catch (ClassNotFoundException print) {
+                this.logger.log(LogLevel.WARNING, LifecycleStage.ENABLING, this.pluginDefinition, "Event type unknown, the plugin host doesn't get these events", subscriptions[index], null);
+            }
+        }
+        this.eventTypes = types.toArray(new Class<?>[types.size()]);
+        this.eventPriorities = priorities.toArray(new Priority[priorities.size()]);
+    }
+
+    private void serveCallbacks() {
+        // calls and events of the child, one at a time
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (RemotePlugin.this.isAlive()) {
+                    try {
+                        IpcMessage request = RemotePlugin.this.callbacks.receive(SLICE);
+                        if (request != null) {
+                            RemotePlugin.this.handleCallback(request);
+                        }
+                    } catch (IOException print) {
+                        RemotePlugin.this.logger.log(LogLevel.ERROR, null, RemotePlugin.this.pluginDefinition, "Callback of the plugin host not handled", null, print);
+                    }
+                }
+            }
+        }, "PluginHost-Callbacks-" + this.pluginDefinition.getName());
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private void handleCallback(IpcMessage request) throws IOException {
+        switch (request.getType()) {
+            case IpcMessage.CALL :
+                // a dependency of the plugin, called by name
+                Object[] payload = (Object[]) request.getPayload();
+                byte type = IpcMessage.RESULT;
+                Object result;
+                try {
+                    result = this.pluginManager.callPlugin(request.getName(), (String) payload[0], (String[]) payload[1], (Object[]) payload[2]);
+                } catch (Throwable cause) {
+                    type = IpcMessage.FAILURE;
+                    result = cause;
+                }
+                this.callbacks.respond(request.getId(), type, request.getName(), result, this.timeout);
+                break;
+            case IpcMessage.EVENT :
+                // the forwarder doesn't send the event back
+                this.incoming = request.getPayload();
+                try {
+                    this.pluginManager.getEventBus().post(request.getPayload());
+                } finally {
+                    this.incoming = null;
+                }
+                break;
+            default :
+                this.callbacks.respond(request.getId(), IpcMessage.FAILURE, request.getName(), new IllegalArgumentException("Unknown message type " + request.getType() + "!"), this.timeout);
+        }
+    }
+
+    private void watch(final Process started) {
+        Thread monitor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.waitFor();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                // calls waiting for a host that is gone fail at once
+                if (RemotePlugin.this.process == started && !RemotePlugin.this.stopping) {
+                    RemotePlugin.this.logger.log(LogLevel.WARNING, null, RemotePlugin.this.pluginDefinition, "Plugin host exited", "exit code " + started.exitValue(), null);
+                }
+                try {
+                    RemotePlugin.this.channel.close();
+                    RemotePlugin.this.callbacks.close();
+                } catch (IOException e) {
+                    // closed already
+                }
+            }
+        }, "PluginHost-Monitor-" + this.pluginDefinition.getName());
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    private synchronized void destroy() {
+        // waiting calls fail, when the channel is closed
+        Process process = this.process;
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        this.process = null;
+        try {
+            this.channel.close();
+            this.callbacks.close();
+        } catch (IOException e) {
+            // the files are deleted anyway
+        }
+        IpcChannel.delete(this.channelDirectory, this.pluginDefinition.getName());
+        IpcChannel.delete(this.channelDirectory, this.pluginDefinition.getName() + PluginHost.CALLBACKS);
+        this.channelDirectory.delete();
+    }
+
+    protected Object call(String method, String[] typeNames, Object[] args) throws Throwable {
+        this.checkRunning();
+        return this.channel.request(IpcMessage.CALL, method, new Object[] { typeNames, args != null ? args : new Object[0] }, this.timeout);
+    }
+
+    protected void post(Object event) throws IOException {
+        // events are one-way, a full ring or a busy sender drops the event instead of blocking the event bus
+        if (event == this.incoming) {
+            return;
+        }
+        this.checkRunning();
+        if (!this.channel.post(new IpcMessage(IpcMessage.EVENT, null, event))) {
+            long dropped = this.droppedEvents.incrementAndGet();
+            if ((dropped & (dropped - 1)) == 0) {
+                this.logger.log(LogLevel.WARNING, null, this.pluginDefinition, "Event dropped, the plugin host doesn't keep up", dropped + " dropped", null);
+            }
+        }
+    }
+
+    protected MethodHandle getEventForwarder() {
+        try {
+            MethodHandle post = MethodHandles.lookup().findVirtual(RemotePlugin.class, "post", MethodType.methodType(void.class, Object.class));
+            return post.bindTo(this);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> T createProxy(Class<T> type) {
+        // every call of the interface is forwarded to the child
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(RemotePlugin.this, args);
+                }
+                return RemotePlugin.this.call(method.getName(), IpcMessage.getTypeNames(method.getParameterTypes()), args);
+            }
+        });
+    }
+
+    private void checkRunning() throws IOException {
+        if (!this.isAlive()) {
+            throw new IOException("Plugin host of '" + this.pluginDefinition.getName() + "' is not running!");
+        }
+    }
+
+    protected Class<?>[] getEventTypes() {
+        return this.eventTypes;
+    }
+
+    protected Priority[] getEventPriorities() {
+        return this.eventPriorities;
+    }
+
+    protected PluginDefinition getPluginDefinition() {
+        return this.pluginDefinition;
+    }
+
+    protected boolean isAlive() {
+        Process process = this.process;
+        if (process == null) {
+            return false;
+        }
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+}
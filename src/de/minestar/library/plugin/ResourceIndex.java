@@ -0,0 +1,262 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+public class ResourceIndex {
+
+    private final ConcurrentHashMap<String, List<File>> sources;
+    private final HashMap<File, List<String>> names;
+    private final ConcurrentHashMap<File, JarFile> jarFiles;
+    private final LinkedHashMap<ResourceKey, byte[]> cache;
+    private long maxBytes = 4 * 1024 * 1024, cachedBytes = 0, generation = 0;
+    private int maxEntryBytes = 64 * 1024;
+
+    protected ResourceIndex() {
+        this.sources = new ConcurrentHashMap<String, List<File>>();
+        this.names = new HashMap<File, List<String>>();
+        this.jarFiles = new ConcurrentHashMap<File, JarFile>();
+        // access order, the eldest entry is the least recently used one
+        this.cache = new LinkedHashMap<ResourceKey, byte[]>(64, 0.75f, true);
+    }
+
+    protected synchronized void registerAll(Map<File, List<String>> resources) {
+        // group by name, every name is copied once, lookups don't lock
+        Map<String, List<File>> added = new LinkedHashMap<String, List<File>>();
+        for (Map.Entry<File, List<String>> entry : resources.entrySet()) {
+            this.names.put(entry.getKey(), entry.getValue());
+            for (String name : entry.getValue()) {
+                List<File> files = added.get(name);
+                if (files == null) {
+                    files = new ArrayList<File>(1);
+                    added.put(name, files);
+                }
+                files.add(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, List<File>> entry : added.entrySet()) {
+            List<File> oldList = this.sources.get(entry.getKey());
+            List<File> list = new ArrayList<File>((oldList != null ? oldList.size() : 0) + entry.getValue().size());
+            if (oldList != null) {
+                list.addAll(oldList);
+            }
+            list.addAll(entry.getValue());
+            this.sources.put(entry.getKey(), Collections.unmodifiableList(list));
+        }
+    }
+
+    protected synchronized void unregisterAll(File source) {
+        // a source, that was never registered, has nothing to remove
+        List<String> registered = this.names.remove(source);
+        if (registered == null) {
+            return;
+        }
+
+        // reads started before are not cached anymore
+        this.generation++;
+
+        // remove the names of the source only
+        for (String name : registered) {
+            List<File> oldList = this.sources.get(name);
+            if (oldList == null || !oldList.contains(source)) {
+                continue;
+            }
+            List<File> list = new ArrayList<File>(oldList);
+            list.remove(source);
+            if (list.isEmpty()) {
+                this.sources.remove(name);
+            } else {
+                this.sources.put(name, Collections.unmodifiableList(list));
+            }
+        }
+
+        // drop the cached bytes
+        Iterator<Map.Entry<ResourceKey, byte[]>> iterator = this.cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ResourceKey, byte[]> entry = iterator.next();
+            if (entry.getKey().source.equals(source)) {
+                this.cachedBytes -= entry.getValue().length;
+                iterator.remove();
+            }
+        }
+
+        // close the JAR
+        JarFile jarFile = this.jarFiles.remove(source);
+        if (jarFile != null) {
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                // nothing to do, the file is no longer used
+            }
+        }
+    }
+
+    protected synchronized void clear() {
+        this.generation++;
+        this.sources.clear();
+        this.names.clear();
+        this.cache.clear();
+        this.cachedBytes = 0;
+
+        // close the JARs
+        for (JarFile jarFile : this.jarFiles.values()) {
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                // nothing to do, the file is no longer used
+            }
+        }
+        this.jarFiles.clear();
+    }
+
+    protected synchronized void setCacheSize(long maxBytes, int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.evict();
+    }
+
+    protected boolean hasResource(String name) {
+        return this.sources.containsKey(name);
+    }
+
+    protected byte[] getResource(String name, File preferredSource) throws IOException {
+        // the preferred source wins, otherwise the first source in scan order
+        List<File> list = this.sources.get(name);
+        if (list == null) {
+            return null;
+        }
+        File source = preferredSource != null && list.contains(preferredSource) ? preferredSource : list.get(0);
+
+        // cached?
+        ResourceKey key = new ResourceKey(source, name);
+        long generation;
+        synchronized (this) {
+            byte[] bytes = this.cache.get(key);
+            if (bytes != null) {
+                return bytes.clone();
+            }
+            generation = this.generation;
+        }
+
+        // read and cache small resources
+        byte[] bytes = this.read(source, name);
+        if (bytes != null && bytes.length <= this.maxEntryBytes) {
+            synchronized (this) {
+                // the source may have been unregistered meanwhile
+                if (generation == this.generation && this.cache.put(key, bytes) == null) {
+                    this.cachedBytes += bytes.length;
+                    this.evict();
+                }
+            }
+            return bytes.clone();
+        }
+        return bytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<ResourceKey, byte[]>> iterator = this.cache.entrySet().iterator();
+        while (this.cachedBytes > this.maxBytes && iterator.hasNext()) {
+            this.cachedBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private byte[] read(File source, String name) throws IOException {
+        // exploded directories
+        if (source.isDirectory()) {
+            File file = new File(source, name);
+            return file.isFile() ? readFully(new FileInputStream(file)) : null;
+        }
+
+        // the JAR stays open until the source is unregistered
+        JarFile jarFile = this.jarFiles.get(source);
+        if (jarFile == null) {
+            synchronized (this) {
+                jarFile = this.jarFiles.get(source);
+                if (jarFile == null) {
+                    jarFile = new JarFile(source);
+                    this.jarFiles.put(source, jarFile);
+                }
+            }
+        }
+        JarEntry jarEntry = jarFile.getJarEntry(name);
+        return jarEntry != null ? readFully(jarFile.getInputStream(jarEntry)) : null;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static class ResourceKey {
+
+        private final File source;
+        private final String name;
+
+        private ResourceKey(File source, String name) {
+            this.source = source;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof ResourceKey)) {
+                return false;
+            }
+            ResourceKey other = (ResourceKey) object;
+            return this.source.equals(other.source) && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.source.hashCode() + this.name.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class ResourceMeter {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final MethodHandle ALLOCATED_BYTES;
+    private static final boolean CPU_TIME_SUPPORTED;
+
+    static {
+        // allocation counters are only available on HotSpot-based VMs
+        // the extended bean is looked up by name, other VMs don't have the class at all
+        MethodHandle allocatedBytes = null;
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (beanClass.isInstance(THREAD_BEAN) && (Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(THREAD_BEAN) && (Boolean) beanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(THREAD_BEAN)) {
+                allocatedBytes = MethodHandles.publicLookup().findVirtual(beanClass, "getThreadAllocatedBytes", MethodType.methodType(long.class, long.class)).bindTo(THREAD_BEAN);
+            }
+        } catch (Throwable ignore) {
+            allocatedBytes = null;
+        }
+        ALLOCATED_BYTES = allocatedBytes;
+        CPU_TIME_SUPPORTED = THREAD_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_BEAN.isThreadCpuTimeEnabled();
+    }
+
+    private ResourceMeter() {
+    }
+
+    protected static long cpuTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_BEAN.getCurrentThreadCpuTime() : 0L;
+    }
+
+    protected static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return 0L;
+        }
+        try {
+            return (long) ALLOCATED_BYTES.invokeExact(Thread.currentThread().getId());
+        } catch (Throwable ignore) {
+            return 0L;
+        }
+    }
+
+}
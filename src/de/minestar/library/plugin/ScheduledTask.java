@@ -0,0 +1,103 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+public class ScheduledTask {
+
+    private static final int WAITING = 0, CANCELLED = 1, DONE = 2;
+    private static final AtomicIntegerFieldUpdater<ScheduledTask> STATE = AtomicIntegerFieldUpdater.newUpdater(ScheduledTask.class, "state");
+
+    private final TaskScheduler scheduler;
+    private final PluginDefinition owner;
+    private final AtomicBoolean ownerCancelled;
+    private final Runnable task;
+    private final long period;
+    private volatile int state;
+
+    // wheel position, only touched by the timer thread
+    protected long deadline, remainingRounds;
+    protected ScheduledTask previous, next;
+    protected TaskScheduler.Bucket bucket;
+
+    protected ScheduledTask(TaskScheduler scheduler, PluginDefinition owner, AtomicBoolean ownerCancelled, Runnable task, long deadline, long period) {
+        this.scheduler = scheduler;
+        this.owner = owner;
+        this.ownerCancelled = ownerCancelled;
+        this.task = task;
+        this.deadline = deadline;
+        this.period = period;
+        this.state = WAITING;
+    }
+
+    public boolean cancel() {
+        if (STATE.compareAndSet(this, WAITING, CANCELLED)) {
+            this.scheduler.cancelled(this);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isCancelled() {
+        // all tasks of a plugin are cancelled at once by a shared flag
+        return this.state == CANCELLED || (this.state == WAITING && this.ownerCancelled.get());
+    }
+
+    public boolean isDone() {
+        return this.state != WAITING || this.ownerCancelled.get();
+    }
+
+    protected PluginDefinition getOwner() {
+        return this.owner;
+    }
+
+    protected void run() {
+        // the state may have changed since the task was dispatched
+        if (this.isDone()) {
+            return;
+        }
+        if (this.period == 0 && !STATE.compareAndSet(this, WAITING, DONE)) {
+            return;
+        }
+
+        // run and account the resources to the owner
+        long cpuStart = ResourceMeter.cpuTime(), allocationStart = ResourceMeter.allocatedBytes();
+        try {
+            this.task.run();
+        } catch (Throwable print) {
+            this.scheduler.failed(this, print);
+        }
+        this.owner.account(cpuStart, allocationStart);
+
+        // repeating tasks are scheduled again
+        if (!this.isDone()) {
+            this.deadline = Math.max(this.deadline + this.period, System.nanoTime());
+            this.scheduler.reschedule(this);
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ServiceRegistry {
+
+    private final ConcurrentHashMap<Class<?>, Services> services;
+
+    protected ServiceRegistry() {
+        this.services = new ConcurrentHashMap<Class<?>, Services>();
+    }
+
+    public <S> S getService(Class<S> service) {
+        // lock-free read of the highest ranked implementation
+        Services entry = this.services.get(service);
+        if (entry == null) {
+            return null;
+        }
+        return service.cast(entry.first);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <S> List<S> getServices(Class<S> service) {
+        // lock-free read of all implementations, highest rank first
+        Services entry = this.services.get(service);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        return (List<S>) entry.implementations;
+    }
+
+    protected synchronized <S> void register(PluginDefinition owner, Class<S> service, S implementation, int rank) {
+        // copy the current entries
+        Services entry = this.services.get(service);
+        ServiceEntry[] oldEntries = entry != null ? entry.entries : new ServiceEntry[0];
+        ServiceEntry[] newEntries = new ServiceEntry[oldEntries.length + 1];
+
+        // insert behind every entry with the same or a higher rank
+        int index = 0;
+        while (index < oldEntries.length && oldEntries[index].rank >= rank) {
+            newEntries[index] = oldEntries[index];
+            index++;
+        }
+        newEntries[index] = new ServiceEntry(owner, service.cast(implementation), rank);
+        System.arraycopy(oldEntries, index, newEntries, index + 1, oldEntries.length - index);
+
+        // publish the new index
+        this.services.put(service, new Services(newEntries));
+    }
+
+    protected synchronized void unregisterAll(PluginDefinition owner) {
+        for (Map.Entry<Class<?>, Services> mapEntry : this.services.entrySet()) {
+            // keep all entries of other plugins
+            List<ServiceEntry> list = new ArrayList<ServiceEntry>();
+            for (ServiceEntry serviceEntry : mapEntry.getValue().entries) {
+                if (serviceEntry.owner != owner) {
+                    list.add(serviceEntry);
+                }
+            }
+
+            // publish the new index
+            if (list.isEmpty()) {
+                this.services.remove(mapEntry.getKey());
+            } else if (list.size() != mapEntry.getValue().entries.length) {
+                this.services.put(mapEntry.getKey(), new Services(list.toArray(new ServiceEntry[list.size()])));
+            }
+        }
+    }
+
+    private static class ServiceEntry {
+
+        private final PluginDefinition owner;
+        private final Object implementation;
+        private final int rank;
+
+        private ServiceEntry(PluginDefinition owner, Object implementation, int rank) {
+            this.owner = owner;
+            this.implementation = implementation;
+            this.rank = rank;
+        }
+    }
+
+    private static class Services {
+
+        private final ServiceEntry[] entries;
+        private final Object first;
+        private final List<Object> implementations;
+
+        private Services(ServiceEntry[] entries) {
+            this.entries = entries;
+            this.first = entries[0].implementation;
+
+            // precompute the view
+            Object[] array = new Object[entries.length];
+            for (int index = 0; index < entries.length; index++) {
+                array[index] = entries[index].implementation;
+            }
+            this.implementations = Collections.unmodifiableList(Arrays.asList(array));
+        }
+    }
+
+}
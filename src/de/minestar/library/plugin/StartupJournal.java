@@ -0,0 +1,319 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.units.JarFingerprint;
+
+public class StartupJournal {
+
+    public static final String JOURNAL_FILE = ".startup.journal";
+
+    private final File file;
+    private final PluginLogger logger;
+    private final Map<String, String> quarantined;
+    private final Map<String, String> knownGood;
+    private final boolean recovering;
+    private PrintWriter writer;
+
+    protected StartupJournal(PluginLogger logger) {
+        // a journal, that neither reads nor writes the file
+        // plugin hosts use it, the journal belongs to the process owning the plugin folder
+        this.file = null;
+        this.logger = logger;
+        this.quarantined = new LinkedHashMap<String, String>();
+        this.knownGood = new LinkedHashMap<String, String>();
+        this.recovering = false;
+    }
+
+    protected StartupJournal(File pluginFolder, PluginLogger logger) {
+        this.file = new File(pluginFolder, JOURNAL_FILE);
+        this.logger = logger;
+        this.quarantined = new LinkedHashMap<String, String>();
+        this.knownGood = new LinkedHashMap<String, String>();
+
+        // replay the old journal
+        Map<String, String> unfinished = new LinkedHashMap<String, String>();
+        if (this.file.exists()) {
+            try {
+                this.replay(unfinished);
+            } catch (IOException print) {
+                this.logger.log(LogLevel.ERROR, LifecycleStage.DISCOVERED, (String) null, "Could not read the journal", this.file, print);
+            }
+        }
+
+        // a plugin that began a step, but never finished it, crashed the last run
+        this.recovering = !unfinished.isEmpty();
+        for (Map.Entry<String, String> entry : unfinished.entrySet()) {
+            this.quarantined.put(entry.getKey(), entry.getValue());
+            this.logger.log(LogLevel.ERROR, LifecycleStage.FAILED, entry.getKey(), "Plugin crashed the last run and is quarantined", entry.getValue(), null);
+        }
+
+        // compact and continue appending
+        try {
+            this.compact();
+        } catch (IOException print) {
+            this.logger.log(LogLevel.ERROR, LifecycleStage.DISCOVERED, (String) null, "Could not write the journal", this.file, print);
+        }
+    }
+
+    private void replay(Map<String, String> unfinished) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(this.file));
+        try {
+            // "<record>\t<name>[\t<stamp>[\t<fingerprint or path>]]"
+            Map<String, String> goodSet = null;
+            int expected = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                String record = fields[0];
+                if (record.equals("BEGIN") && fields.length == 3) {
+                    unfinished.put(fields[1], fields[2]);
+                } else if (record.equals("END") && fields.length == 2) {
+                    unfinished.remove(fields[1]);
+                } else if (record.equals("QUARANTINE") && (fields.length == 3 || fields.length == 4)) {
+                    this.quarantined.put(fields[1], fields.length == 4 ? fields[2] + "\t" + fields[3] : fields[2]);
+                } else if (record.equals("RELEASE") && fields.length == 2) {
+                    this.quarantined.remove(fields[1]);
+                } else if (record.equals("GOOD") && fields.length == 2) {
+                    // the set only counts, if it was written completely
+                    goodSet = new LinkedHashMap<String, String>();
+                    expected = Integer.parseInt(fields[1]);
+                } else if (record.equals("PLUGIN") && fields.length == 4 && goodSet != null) {
+                    goodSet.put(fields[1], fields[2] + "\t" + fields[3]);
+                    if (goodSet.size() == expected) {
+                        this.knownGood.clear();
+                        this.knownGood.putAll(goodSet);
+                        goodSet = null;
+                    }
+                }
+            }
+        } catch (NumberFormatException print) {
+            throw new IOException("Corrupt journal", print);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private synchronized void compact() throws IOException {
+        // write the state to a new file and replace the old one
+        File compacted = new File(this.file.getParentFile(), JOURNAL_FILE + ".tmp");
+        PrintWriter compactWriter = new PrintWriter(new FileWriter(compacted));
+        try {
+            for (Map.Entry<String, String> entry : this.quarantined.entrySet()) {
+                compactWriter.println("QUARANTINE\t" + entry.getKey() + "\t" + entry.getValue());
+            }
+            this.writeKnownGood(compactWriter);
+        } finally {
+            compactWriter.close();
+        }
+        if (!compacted.renameTo(this.file) && !(this.file.delete() && compacted.renameTo(this.file))) {
+            throw new IOException("Could not replace " + this.file);
+        }
+        this.writer = new PrintWriter(new FileWriter(this.file, true));
+    }
+
+    private void writeKnownGood(PrintWriter target) {
+        target.println("GOOD\t" + this.knownGood.size());
+        for (Map.Entry<String, String> entry : this.knownGood.entrySet()) {
+            target.println("PLUGIN\t" + entry.getKey() + "\t" + entry.getValue());
+        }
+    }
+
+    private synchronized void append(String line) {
+        // flushed at once, so the record survives a crash of the process
+        if (this.writer != null) {
+            this.writer.println(line);
+            this.writer.flush();
+        }
+    }
+
+    protected void begin(PluginDefinition pluginDefinition) {
+        if (this.file == null) {
+            return;
+        }
+        // only the size and time are recorded, the file is hashed, when the plugin is quarantined
+        this.append("BEGIN\t" + pluginDefinition.getName() + "\t" + stamp(pluginDefinition.getPluginFile()));
+    }
+
+    protected void end(PluginDefinition pluginDefinition) {
+        if (this.file == null) {
+            return;
+        }
+        this.append("END\t" + pluginDefinition.getName());
+    }
+
+    protected synchronized void recordKnownGood(Collection<PluginDefinition> enabledPlugins) {
+        // an empty set is never a known-good set
+        if (this.file == null || enabledPlugins.isEmpty()) {
+            return;
+        }
+        // "<stamp>\t<path>" per plugin
+        Map<String, String> goodSet = new LinkedHashMap<String, String>();
+        for (PluginDefinition pluginDefinition : enabledPlugins) {
+            goodSet.put(pluginDefinition.getName(), stamp(pluginDefinition.getPluginFile()) + "\t" + pluginDefinition.getPluginFile().getAbsolutePath());
+        }
+        if (goodSet.equals(this.knownGood)) {
+            return;
+        }
+        this.knownGood.clear();
+        this.knownGood.putAll(goodSet);
+        if (this.writer != null) {
+            this.writeKnownGood(this.writer);
+            this.writer.flush();
+        }
+    }
+
+    protected boolean isQuarantined(PluginDefinition pluginDefinition) {
+        // "<stamp>[\t<fingerprint>]", a new build of the plugin is tried again
+        String entry;
+        synchronized (this) {
+            entry = this.quarantined.get(pluginDefinition.getName());
+        }
+        if (entry == null) {
+            return false;
+        }
+        File source = pluginDefinition.getPluginFile();
+        int index = entry.indexOf('\t');
+        String stamp = stamp(source);
+        if (stamp.equals(index < 0 ? entry : entry.substring(0, index))) {
+            // the crashed build is hashed once, a copy with a new time is recognized later
+            String fingerprint = index < 0 && source.isFile() ? fingerprint(source) : null;
+            if (fingerprint != null) {
+                this.quarantine(pluginDefinition.getName(), stamp + "\t" + fingerprint);
+            }
+            return true;
+        }
+
+        // a new size or time is compared by the content, if the crashed build was hashed
+        if (index < 0 || !source.isFile() || !entry.substring(index + 1).equals(fingerprint(source))) {
+            return false;
+        }
+        this.quarantine(pluginDefinition.getName(), stamp + entry.substring(index));
+        return true;
+    }
+
+    private synchronized void quarantine(String name, String entry) {
+        if (this.file == null || !this.quarantined.containsKey(name)) {
+            return;
+        }
+        this.quarantined.put(name, entry);
+        this.append("QUARANTINE\t" + name + "\t" + entry);
+    }
+
+    protected synchronized boolean release(String name) {
+        if (this.quarantined.remove(name) == null) {
+            return false;
+        }
+        this.append("RELEASE\t" + name);
+        return true;
+    }
+
+    protected List<File> getKnownGoodSources(List<File> sources) {
+        // only the sources of the known-good set, which didn't change since
+        List<File> result = new ArrayList<File>();
+        Map<String, String> wanted = new HashMap<String, String>();
+        synchronized (this) {
+            for (String entry : this.knownGood.values()) {
+                int index = entry.indexOf('\t');
+                wanted.put(entry.substring(index + 1), entry.substring(0, index));
+            }
+        }
+        for (File source : sources) {
+            String fingerprint = wanted.get(source.getAbsolutePath());
+            if (fingerprint != null && fingerprint.equals(stamp(source))) {
+                result.add(source);
+            }
+        }
+        return result;
+    }
+
+    private static String stamp(File source) {
+        // "<size>:<time>" of a JAR, "<size>:<newest time>:<files>" of an exploded plugin
+        if (source.isFile()) {
+            return source.length() + ":" + source.lastModified();
+        }
+        long[] digest = new long[3];
+        stamp(source, digest);
+        return digest[0] + ":" + digest[1] + ":" + digest[2];
+    }
+
+    private static void stamp(File directory, long[] digest) {
+        // removed files change the time of their directory
+        digest[1] = Math.max(digest[1], directory.lastModified());
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                stamp(file, digest);
+            } else {
+                digest[0] += file.length();
+                digest[1] = Math.max(digest[1], file.lastModified());
+                digest[2]++;
+            }
+        }
+    }
+
+    private static String fingerprint(File source) {
+        // unreadable files have no fingerprint
+        try {
+            return JarFingerprint.of(source);
+        } catch (IOException print) {
+            return null;
+        }
+    }
+
+    public boolean isRecovering() {
+        return this.recovering;
+    }
+
+    public synchronized Set<String> getQuarantinedPlugins() {
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(this.quarantined.keySet()));
+    }
+
+    public synchronized Set<String> getKnownGoodPlugins() {
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(this.knownGood.keySet()));
+    }
+
+}
@@ -0,0 +1,273 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import de.minestar.library.plugin.logging.LifecycleStage;
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class TaskScheduler {
+
+    // tasks moved into the wheel per tick, the rest waits for the next tick
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final PluginLogger logger;
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<ScheduledTask> pending, cancelled;
+    private final ConcurrentHashMap<PluginDefinition, AtomicBoolean> owners;
+    private Executor executor;
+    private volatile Thread timer;
+    private long startTime, tick;
+
+    protected TaskScheduler(PluginLogger logger) {
+        this(logger, 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    protected TaskScheduler(PluginLogger logger, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this.logger = logger;
+        this.tickDuration = unit.toNanos(tickDuration);
+
+        // the number of buckets is a power of two
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int index = 0; index < size; index++) {
+            this.wheel[index] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.pending = new ConcurrentLinkedQueue<ScheduledTask>();
+        this.cancelled = new ConcurrentLinkedQueue<ScheduledTask>();
+        this.owners = new ConcurrentHashMap<PluginDefinition, AtomicBoolean>();
+    }
+
+    protected ScheduledTask schedule(PluginDefinition owner, Runnable task, long delay, long period, TimeUnit unit) {
+        if (period < 0) {
+            throw new IllegalArgumentException("The period must not be negative!");
+        }
+        this.start();
+
+        // tag the task with the cancel flag of its owner
+        AtomicBoolean ownerCancelled = this.owners.get(owner);
+        if (ownerCancelled == null) {
+            ownerCancelled = new AtomicBoolean();
+            AtomicBoolean existing = this.owners.putIfAbsent(owner, ownerCancelled);
+            if (existing != null) {
+                ownerCancelled = existing;
+            }
+        }
+        ScheduledTask scheduledTask = new ScheduledTask(this, owner, ownerCancelled, task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)), unit.toNanos(period));
+        this.pending.add(scheduledTask);
+        return scheduledTask;
+    }
+
+    protected void cancelAll(PluginDefinition owner) {
+        // cancel every task of the plugin at once, the wheel drops them when they expire
+        AtomicBoolean ownerCancelled = this.owners.remove(owner);
+        if (ownerCancelled != null) {
+            ownerCancelled.set(true);
+        }
+    }
+
+    protected void cancelled(ScheduledTask scheduledTask) {
+        // the timer thread unlinks the task
+        this.cancelled.add(scheduledTask);
+    }
+
+    protected void reschedule(ScheduledTask scheduledTask) {
+        this.pending.add(scheduledTask);
+    }
+
+    protected void failed(ScheduledTask scheduledTask, Throwable cause) {
+        this.logger.log(LogLevel.ERROR, LifecycleStage.ENABLED, scheduledTask.getOwner(), "Scheduled task failed", null, cause);
+    }
+
+    private void start() {
+        // a single timer thread for all plugins, started on the first task
+        if (this.timer != null) {
+            return;
+        }
+        synchronized (this) {
+            if (this.timer == null) {
+                this.startTime = System.nanoTime();
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        TaskScheduler.this.runTimer();
+                    }
+                }, "PluginManager-Scheduler");
+                thread.setDaemon(true);
+                thread.start();
+                this.timer = thread;
+            }
+        }
+    }
+
+    private void runTimer() {
+        while (true) {
+            // wait for the end of the current tick
+            long deadline = this.startTime + this.tickDuration * (this.tick + 1);
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+
+            // update the wheel and expire the current bucket
+            this.transferCancelled();
+            this.transferPending();
+            this.wheel[(int) (this.tick & this.mask)].expire(now, this);
+            this.tick++;
+        }
+    }
+
+    private void transferCancelled() {
+        ScheduledTask scheduledTask;
+        while ((scheduledTask = this.cancelled.poll()) != null) {
+            if (scheduledTask.bucket != null) {
+                scheduledTask.bucket.remove(scheduledTask);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int count = 0; count < MAX_TRANSFERS_PER_TICK; count++) {
+            ScheduledTask scheduledTask = this.pending.poll();
+            if (scheduledTask == null) {
+                return;
+            }
+            if (scheduledTask.isDone()) {
+                continue;
+            }
+
+            // rounds and bucket of the deadline, expired tasks go into the current bucket
+            long ticks = Math.max((scheduledTask.deadline - this.startTime) / this.tickDuration, this.tick);
+            scheduledTask.remainingRounds = (ticks - this.tick) / this.wheel.length;
+            this.wheel[(int) (ticks & this.mask)].add(scheduledTask);
+        }
+    }
+
+    private void dispatch(final ScheduledTask scheduledTask) {
+        // tasks of disabled plugins are dropped
+        if (!scheduledTask.getOwner().isEnabled()) {
+            scheduledTask.cancel();
+            return;
+        }
+        try {
+            this.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    scheduledTask.run();
+                }
+            });
+        } catch (Throwable print) {
+            this.failed(scheduledTask, print);
+        }
+    }
+
+    private synchronized Executor getExecutor() {
+        if (this.executor == null) {
+            this.executor = createDefaultExecutor();
+        }
+        return this.executor;
+    }
+
+    protected synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PluginManager-Task");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    protected static class Bucket {
+
+        private ScheduledTask head, tail;
+
+        private void add(ScheduledTask scheduledTask) {
+            scheduledTask.bucket = this;
+            scheduledTask.previous = this.tail;
+            scheduledTask.next = null;
+            if (this.tail == null) {
+                this.head = scheduledTask;
+            } else {
+                this.tail.next = scheduledTask;
+            }
+            this.tail = scheduledTask;
+        }
+
+        private void remove(ScheduledTask scheduledTask) {
+            if (scheduledTask.previous != null) {
+                scheduledTask.previous.next = scheduledTask.next;
+            } else {
+                this.head = scheduledTask.next;
+            }
+            if (scheduledTask.next != null) {
+                scheduledTask.next.previous = scheduledTask.previous;
+            } else {
+                this.tail = scheduledTask.previous;
+            }
+            scheduledTask.previous = null;
+            scheduledTask.next = null;
+            scheduledTask.bucket = null;
+        }
+
+        private void expire(long now, TaskScheduler scheduler) {
+            ScheduledTask scheduledTask = this.head;
+            while (scheduledTask != null) {
+                ScheduledTask next = scheduledTask.next;
+                if (scheduledTask.isDone()) {
+                    this.remove(scheduledTask);
+                } else if (scheduledTask.remainingRounds <= 0) {
+                    this.remove(scheduledTask);
+                    scheduler.dispatch(scheduledTask);
+                } else {
+                    scheduledTask.remainingRounds--;
+                }
+                scheduledTask = next;
+            }
+        }
+    }
+
+}
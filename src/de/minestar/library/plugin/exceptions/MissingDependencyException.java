@@ -1,50 +1,50 @@
-/**
- * The MIT License (MIT)
- * 
- * Copyright (c) 2014 Minestar.de
- * 
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- * 
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-
-package de.minestar.library.plugin.exceptions;
-
-import de.minestar.library.plugin.PluginDefinition;
-
-public class MissingDependencyException extends Exception {
-
-    private static final long serialVersionUID = 3372322759235107589L;
-
-    private final PluginDefinition pluginDefinition;
-    private final String dependingPlugin;
-
-    public MissingDependencyException(String string, PluginDefinition pluginDefinition, String dependingPlugin) {
-        super(string);
-        this.pluginDefinition = pluginDefinition;
-        this.dependingPlugin = dependingPlugin;
-    }
-
-    public PluginDefinition getPluginDefinition() {
-        return pluginDefinition;
-    }
-
-    public String getDependingPlugin() {
-        return dependingPlugin;
-    }
-
-}
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.exceptions;
+
+import de.minestar.library.plugin.PluginDefinition;
+
+public class MissingDependencyException extends Exception {
+
+    private static final long serialVersionUID = 3372322759235107589L;
+
+    private final PluginDefinition pluginDefinition;
+    private final String dependingPlugin;
+
+    public MissingDependencyException(String string, PluginDefinition pluginDefinition, String dependingPlugin) {
+        super(string);
+        this.pluginDefinition = pluginDefinition;
+        this.dependingPlugin = dependingPlugin;
+    }
+
+    public PluginDefinition getPluginDefinition() {
+        return pluginDefinition;
+    }
+
+    public String getDependingPlugin() {
+        return dependingPlugin;
+    }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.ipc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class IpcChannel implements Closeable {
+
+    private static final String REQUESTS = ".requests", RESPONSES = ".responses";
+    private static final long SLICE = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MappedRing inbound, outbound;
+    private final ReentrantLock sendLock, requestLock;
+    private volatile ClassLoader classLoader;
+    private volatile boolean closed;
+    private long nextRequestId;
+
+    private IpcChannel(MappedRing inbound, MappedRing outbound) {
+        // both rings have a single producer and a single consumer
+        this.inbound = inbound;
+        this.outbound = outbound;
+        this.sendLock = new ReentrantLock();
+        this.requestLock = new ReentrantLock();
+    }
+
+    public static IpcChannel create(File directory, String name, int capacity, boolean requester) throws IOException {
+        // the parent creates both rings, before the child maps them
+        MappedRing requests = MappedRing.create(new File(directory, name + REQUESTS), capacity);
+        MappedRing responses = MappedRing.create(new File(directory, name + RESPONSES), capacity);
+        return requester ? new IpcChannel(responses, requests) : new IpcChannel(requests, responses);
+    }
+
+    public static IpcChannel open(File directory, String name, boolean requester) throws IOException {
+        // the requester writes the requests and reads the responses, the other side the other way round
+        MappedRing requests = MappedRing.open(new File(directory, name + REQUESTS));
+        MappedRing responses = MappedRing.open(new File(directory, name + RESPONSES));
+        return requester ? new IpcChannel(responses, requests) : new IpcChannel(requests, responses);
+    }
+
+    public static void delete(File directory, String name) {
+        new File(directory, name + REQUESTS).delete();
+        new File(directory, name + RESPONSES).delete();
+    }
+
+    public void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public boolean send(IpcMessage message, long timeoutNanos) throws IOException {
+        byte[] encoded = message.encode();
+        this.sendLock.lock();
+        try {
+            return this.outbound.write(encoded, timeoutNanos);
+        } finally {
+            this.sendLock.unlock();
+        }
+    }
+
+    public boolean post(IpcMessage message) throws IOException {
+        // never waits, false if another thread is sending or the ring is full
+        byte[] encoded = message.encode();
+        if (!this.sendLock.tryLock()) {
+            return false;
+        }
+        try {
+            return this.outbound.write(encoded, 0);
+        } finally {
+            this.sendLock.unlock();
+        }
+    }
+
+    public void respond(long id, byte type, String name, Object payload, long timeoutNanos) throws IOException {
+        try {
+            this.send(new IpcMessage(id, type, name, payload), timeoutNanos);
+        } catch (IOException e) {
+            // e.g. a result that can't be serialized
+            this.send(new IpcMessage(id, IpcMessage.FAILURE, name, e), timeoutNanos);
+        } catch (RuntimeException e) {
+            // e.g. a result that doesn't fit into the ring, the responder keeps running
+            this.send(new IpcMessage(id, IpcMessage.FAILURE, name, e), timeoutNanos);
+        }
+    }
+
+    public Object request(byte type, String name, Object payload, long timeoutNanos) throws Throwable {
+        // one request at a time, the whole round trip is bounded by the timeout
+        long deadline = System.nanoTime() + Math.min(timeoutNanos, Long.MAX_VALUE / 2);
+        if (!this.requestLock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+            throw new IOException("Another request didn't finish in time!");
+        }
+        try {
+            this.checkOpen();
+            long id = ++this.nextRequestId;
+            if (!this.send(new IpcMessage(id, type, name, payload), deadline - System.nanoTime())) {
+                throw new IOException("Request could not be sent!");
+            }
+            while (true) {
+                // responses to requests that timed out are discarded by their id
+                IpcMessage response = this.receive(Math.min(SLICE, deadline - System.nanoTime()));
+                if (response != null && response.getId() == id) {
+                    if (response.getType() != IpcMessage.FAILURE) {
+                        return response.getPayload();
+                    }
+                    if (response.getPayload() instanceof Throwable) {
+                        throw (Throwable) response.getPayload();
+                    }
+                    throw new IOException("Request failed: " + response.getPayload());
+                }
+                this.checkOpen();
+                if (System.nanoTime() >= deadline) {
+                    throw new IOException("No response within the timeout!");
+                }
+            }
+        } finally {
+            this.requestLock.unlock();
+        }
+    }
+
+    public IpcMessage receive(long timeoutNanos) throws IOException {
+        byte[] message = this.inbound.read(timeoutNanos);
+        return message != null ? IpcMessage.decode(message, this.classLoader) : null;
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Channel closed!");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // waiting requests fail within a slice, the mapping stays valid until they are gone
+        this.closed = true;
+        this.inbound.close();
+        this.outbound.close();
+    }
+
+}
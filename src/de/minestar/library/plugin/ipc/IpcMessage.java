@@ -0,0 +1,215 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.ipc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.HashMap;
+import java.util.Map;
+
+public class IpcMessage {
+
+    public static final byte ENABLE = 1, CALL = 2, EVENT = 3, DISABLE = 4, RESULT = 5, FAILURE = 6;
+
+    // common values are written directly, everything else with Java serialization
+    private static final byte NULL = 0, BOOLEAN = 1, INTEGER = 2, LONG = 3, DOUBLE = 4, STRING = 5, STRING_ARRAY = 6, OBJECT_ARRAY = 7, SERIALIZED = 8;
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> clazz : new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class }) {
+            PRIMITIVES.put(clazz.getName(), clazz);
+        }
+    }
+
+    private final long id;
+    private final byte type;
+    private final String name;
+    private final Object payload;
+
+    public IpcMessage(byte type, String name, Object payload) {
+        this(0L, type, name, payload);
+    }
+
+    public IpcMessage(long id, byte type, String name, Object payload) {
+        // requests carry an id, their response repeats it
+        this.id = id;
+        this.type = type;
+        this.name = name;
+        this.payload = payload;
+    }
+
+    public byte[] encode() throws IOException {
+        // fixed header, the payload is serialized only if present
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeLong(this.id);
+        output.writeByte(this.type);
+        output.writeUTF(this.name != null ? this.name : "");
+        writeValue(output, this.payload);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            output.writeByte(STRING);
+            output.writeUTF((String) value);
+        } else if (value.getClass() == String[].class) {
+            String[] array = (String[]) value;
+            output.writeByte(STRING_ARRAY);
+            output.writeInt(array.length);
+            for (String element : array) {
+                output.writeUTF(element);
+            }
+        } else if (value.getClass() == Object[].class) {
+            Object[] array = (Object[]) value;
+            output.writeByte(OBJECT_ARRAY);
+            output.writeInt(array.length);
+            for (Object element : array) {
+                writeValue(output, element);
+            }
+        } else {
+            output.writeByte(SERIALIZED);
+            ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+            objectOutput.writeObject(value);
+            objectOutput.flush();
+        }
+    }
+
+    public static IpcMessage decode(byte[] message, ClassLoader classLoader) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(message));
+        long id = input.readLong();
+        byte type = input.readByte();
+        String name = input.readUTF();
+        return new IpcMessage(id, type, name, readValue(input, classLoader));
+    }
+
+    private static Object readValue(DataInputStream input, final ClassLoader classLoader) throws IOException {
+        byte tag = input.readByte();
+        switch (tag) {
+            case NULL :
+                return null;
+            case BOOLEAN :
+                return input.readBoolean();
+            case INTEGER :
+                return input.readInt();
+            case LONG :
+                return input.readLong();
+            case DOUBLE :
+                return input.readDouble();
+            case STRING :
+                return input.readUTF();
+            case STRING_ARRAY :
+                String[] strings = new String[input.readInt()];
+                for (int index = 0; index < strings.length; index++) {
+                    strings[index] = input.readUTF();
+                }
+                return strings;
+            case OBJECT_ARRAY :
+                Object[] objects = new Object[input.readInt()];
+                for (int index = 0; index < objects.length; index++) {
+                    objects[index] = readValue(input, classLoader);
+                }
+                return objects;
+            case SERIALIZED :
+                // classes of the payload are resolved by the plugin's classloader
+                ObjectInputStream objectInput = new ObjectInputStream(input) {
+                    @Override
+                    protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+                        if (classLoader != null) {
+                            try {
+                                return Class.forName(description.getName(), false, classLoader);
+                            } catch (ClassNotFoundException e) {
+                                // fall back to the default resolution
+                            }
+                        }
+                        return super.resolveClass(description);
+                    }
+                };
+                try {
+                    return objectInput.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Payload could not be read!", e);
+                }
+            default :
+                throw new IOException("Unknown value tag " + tag + "!");
+        }
+    }
+
+    public static String[] getTypeNames(Class<?>[] types) {
+        // methods are called by name and parameter types
+        String[] typeNames = new String[types.length];
+        for (int index = 0; index < types.length; index++) {
+            typeNames[index] = types[index].getName();
+        }
+        return typeNames;
+    }
+
+    public static Class<?>[] resolveTypes(String[] typeNames, ClassLoader classLoader) throws ClassNotFoundException {
+        Class<?>[] types = new Class<?>[typeNames.length];
+        for (int index = 0; index < typeNames.length; index++) {
+            Class<?> primitive = PRIMITIVES.get(typeNames[index]);
+            types[index] = primitive != null ? primitive : Class.forName(typeNames[index], false, classLoader);
+        }
+        return types;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public byte getType() {
+        return this.type;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Object getPayload() {
+        return this.payload;
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.ipc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+public class MappedRing implements Closeable {
+
+    // the positions live on separate cache lines
+    private static final int HEADER_SIZE = 128, WRITE_POSITION = 0, READ_POSITION = 64;
+    private static final int LENGTH_SIZE = 4, PADDING = -1;
+    private static final int SPINS = 2000, YIELDS = 100;
+    private static final long MAX_PARK = 100000;
+    private static final MethodHandle GET_LONG, GET_LONG_VOLATILE, PUT_ORDERED_LONG;
+    private static final long ADDRESS_OFFSET;
+
+    static {
+        // the positions are shared with another process, only fences on the mapped memory order them
+        // sun.misc.Unsafe isn't part of the API, so it is bound reflectively
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle objectFieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset", MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+            GET_LONG = lookup.findVirtual(unsafeClass, "getLong", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            GET_LONG_VOLATILE = lookup.findVirtual(unsafeClass, "getLongVolatile", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            PUT_ORDERED_LONG = lookup.findVirtual(unsafeClass, "putOrderedLong", MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            ADDRESS_OFFSET = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+        } catch (Throwable e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer data;
+    private final long address;
+    private final int capacity, mask;
+    private long writePosition, readPosition;
+
+    private MappedRing(File file, int capacity, boolean create) throws IOException {
+        // the capacity is a power of two
+        if (Integer.bitCount(capacity) != 1 || capacity < 1024) {
+            throw new IllegalArgumentException("The capacity must be a power of two and at least 1024 bytes!");
+        }
+        this.file = new RandomAccessFile(file, "rw");
+        if (create) {
+            this.file.setLength(0);
+            this.file.setLength(HEADER_SIZE + capacity);
+        }
+        this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        this.buffer.position(HEADER_SIZE);
+        this.data = this.buffer.slice();
+        this.address = addressOf(this.buffer);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.writePosition = this.getPosition(WRITE_POSITION);
+        this.readPosition = this.getPosition(READ_POSITION);
+    }
+
+    public static MappedRing create(File file, int capacity) throws IOException {
+        return new MappedRing(file, capacity, true);
+    }
+
+    public static MappedRing open(File file) throws IOException {
+        return new MappedRing(file, (int) (file.length() - HEADER_SIZE), false);
+    }
+
+    public boolean write(byte[] message, long timeoutNanos) {
+        // records are aligned to 8 bytes and never wrap
+        int size = align(LENGTH_SIZE + message.length);
+        if (size > this.capacity / 2) {
+            throw new IllegalArgumentException("Message of " + message.length + " bytes doesn't fit into the ring!");
+        }
+        int offset = (int) (this.writePosition & this.mask);
+        int tail = this.capacity - offset;
+        int required = tail < size ? tail + size : size;
+
+        // wait for the consumer
+        long deadline = System.nanoTime() + timeoutNanos;
+        int idle = 0;
+        while (this.capacity - (this.writePosition - this.getPosition(READ_POSITION)) < required) {
+            if (!idle(idle++, deadline)) {
+                return false;
+            }
+        }
+
+        // skip the tail of the ring
+        if (tail < size) {
+            this.data.putInt(offset, PADDING);
+            this.writePosition += tail;
+            offset = 0;
+        }
+
+        // payload first, the length and the position publish the record
+        this.data.position(offset + LENGTH_SIZE);
+        this.data.put(message);
+        this.data.putInt(offset, message.length);
+        this.writePosition += size;
+        this.putPosition(WRITE_POSITION, this.writePosition);
+        return true;
+    }
+
+    public byte[] read(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int idle = 0;
+        while (true) {
+            // wait for the producer
+            while (this.getPosition(WRITE_POSITION) <= this.readPosition) {
+                if (!idle(idle++, deadline)) {
+                    return null;
+                }
+            }
+
+            // skip the tail of the ring
+            int offset = (int) (this.readPosition & this.mask);
+            int length = this.data.getInt(offset);
+            if (length == PADDING) {
+                this.readPosition += this.capacity - offset;
+                continue;
+            }
+
+            // copy the payload and release the space
+            byte[] message = new byte[length];
+            this.data.position(offset + LENGTH_SIZE);
+            this.data.get(message);
+            this.readPosition += align(LENGTH_SIZE + length);
+            this.putPosition(READ_POSITION, this.readPosition);
+            return message;
+        }
+    }
+
+    private long getPosition(int position) {
+        // acquire, the mapped reads after can't be moved before it
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, this.address + position);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void putPosition(int position, long value) {
+        // release, the mapped reads and writes before can't be moved behind it
+        try {
+            PUT_ORDERED_LONG.invokeExact((Object) null, this.address + position, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long addressOf(Buffer buffer) {
+        try {
+            return (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean idle(int idle, long deadline) {
+        // spin, yield and finally park with a growing interval
+        if (idle < SPINS) {
+            return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(remaining, Math.min(MAX_PARK, 1000L << Math.min(idle - SPINS - YIELDS, 7))));
+        }
+        return true;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.logging;
+
+import java.io.PrintStream;
+
+public class AsyncLogSink implements LogSink {
+
+    private final LogLevel minimumLevel;
+    private final PrintStream out, err;
+    private final LifecycleRecord[] buffer;
+    private long head, tail, dropped;
+    private Thread writer;
+
+    public AsyncLogSink(LogLevel minimumLevel) {
+        this(minimumLevel, 1024, System.out, System.err);
+    }
+
+    public AsyncLogSink(LogLevel minimumLevel, int capacity, PrintStream out, PrintStream err) {
+        this.minimumLevel = minimumLevel;
+        this.out = out;
+        this.err = err;
+        this.buffer = new LifecycleRecord[capacity];
+    }
+
+    @Override
+    public boolean isEnabled(LogLevel level) {
+        return level.compareTo(this.minimumLevel) >= 0;
+    }
+
+    @Override
+    public synchronized void log(LifecycleRecord record) {
+        // the buffer is full, the record is dropped
+        if (this.tail - this.head >= this.buffer.length) {
+            this.dropped++;
+            return;
+        }
+
+        // append the record
+        this.buffer[(int) (this.tail % this.buffer.length)] = record;
+        this.tail++;
+
+        // start the writer on demand
+        if (this.writer == null) {
+            this.startWriter();
+        }
+        this.notifyAll();
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            while (this.head < this.tail && this.writer != null && this.writer.isAlive()) {
+                this.wait(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized long getDroppedRecords() {
+        return this.dropped;
+    }
+
+    private void startWriter() {
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        }, "PluginManager-Log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        // write the remaining records on shutdown
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }));
+    }
+
+    private void writeRecords() {
+        while (true) {
+            LifecycleRecord record;
+            long dropped;
+            synchronized (this) {
+                // wait for records
+                while (this.head == this.tail) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                record = this.buffer[(int) (this.head % this.buffer.length)];
+                this.buffer[(int) (this.head % this.buffer.length)] = null;
+                dropped = this.dropped;
+                this.dropped = 0;
+            }
+
+            // format outside of the lock
+            this.write(record, dropped);
+
+            synchronized (this) {
+                this.head++;
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void write(LifecycleRecord record, long dropped) {
+        PrintStream stream = record.getLevel().compareTo(LogLevel.WARNING) >= 0 ? this.err : this.out;
+        if (dropped > 0) {
+            this.err.println(dropped + " log records were dropped!");
+        }
+        stream.println(record.format());
+        if (record.getCause() != null) {
+            record.getCause().printStackTrace(stream);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.logging;
+
+import java.util.concurrent.TimeUnit;
+
+public class LifecycleEvent {
+
+    private final long timestamp, duration;
+    private final LifecycleStage stage;
+    private final String pluginName, pluginVersion, message;
+    private final Throwable cause;
+
+    public LifecycleEvent(long timestamp, long duration, LifecycleStage stage, String pluginName, String pluginVersion, String message, Throwable cause) {
+        this.timestamp = timestamp;
+        this.duration = duration;
+        this.stage = stage;
+        this.pluginName = pluginName;
+        this.pluginVersion = pluginVersion;
+        this.message = message;
+        this.cause = cause;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDuration(TimeUnit unit) {
+        // the time spent in the step, that led to this stage
+        return unit.convert(this.duration, TimeUnit.NANOSECONDS);
+    }
+
+    public LifecycleStage getStage() {
+        return stage;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public String getPluginVersion() {
+        return pluginVersion;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return this.stage + ": " + this.pluginName + (this.pluginVersion != null ? " [ v" + this.pluginVersion + " ]" : "") + " " + TimeUnit.NANOSECONDS.toMicros(this.duration) + "us" + (this.message != null ? " (" + this.message + ")" : "");
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.logging;
+
+public class LifecycleRecord {
+
+    private final long timestamp;
+    private final LogLevel level;
+    private final LifecycleStage stage;
+    private final String pluginName, pluginVersion, message;
+    private final Object detail;
+    private final Throwable cause;
+
+    public LifecycleRecord(long timestamp, LogLevel level, LifecycleStage stage, String pluginName, String pluginVersion, String message, Object detail, Throwable cause) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.stage = stage;
+        this.pluginName = pluginName;
+        this.pluginVersion = pluginVersion;
+        this.message = message;
+        this.detail = detail;
+        this.cause = cause;
+    }
+
+    public String format() {
+        // "<message>: <plugin> [ v<version> ] <detail>!" or "<message>: <detail>"
+        StringBuilder builder = new StringBuilder(this.message);
+        if (this.pluginName != null) {
+            builder.append(": ").append(this.pluginName);
+            if (this.pluginVersion != null) {
+                builder.append(" [ v").append(this.pluginVersion).append(" ]");
+            }
+            if (this.detail != null) {
+                builder.append(' ').append(this.detail);
+            }
+            builder.append('!');
+        } else if (this.detail != null) {
+            builder.append(": ").append(this.detail);
+        }
+        return builder.toString();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public LifecycleStage getStage() {
+        return stage;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public String getPluginVersion() {
+        return pluginVersion;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Object getDetail() {
+        return detail;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+}
@@ -0,0 +1,73 @@
+package de.minestar.library.plugin.tests;
+
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.Collections;
+import java.util.List;
+
+import de.minestar.library.plugin.tools.CdsArchiveTool;
+
+public class CdsBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File pluginFolder = new File(args[0]);
+        File archiveFolder = new File(args[1]);
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        CdsArchiveTool tool = new CdsArchiveTool(pluginFolder, archiveFolder);
+
+        // training run
+        System.out.println("---------------------------------------");
+        System.out.println("Creating CDS archive...");
+        System.out.println("---------------------------------------");
+        if (!tool.isArchiveValid() && !tool.train()) {
+            System.err.println("Could not create CDS archive!");
+            return;
+        }
+
+        // measure
+        List<String> withoutArchive = Collections.emptyList();
+        List<String> withArchive = tool.getJvmOptions();
+        File log = new File(archiveFolder, "benchmark.log");
+        long timeWithout = 0, timeWith = 0;
+        for (int run = 0; run < runs; run++) {
+            timeWithout += measure(tool, withoutArchive, pluginFolder, log);
+            timeWith += measure(tool, withArchive, pluginFolder, log);
+        }
+
+        System.out.println("\n---------------------------------------");
+        System.out.println("Startup without archive: " + (timeWithout / runs / 1000000) + "ms");
+        System.out.println("Startup with archive   : " + (timeWith / runs / 1000000) + "ms");
+        System.out.println("---------------------------------------");
+    }
+
+    private static long measure(CdsArchiveTool tool, List<String> jvmOptions, File pluginFolder, File log) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(tool.createCommand(jvmOptions, CdsArchiveTool.class.getName(), "run", pluginFolder.getAbsolutePath())).redirectErrorStream(true).redirectOutput(Redirect.appendTo(log)).start();
+        process.waitFor();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,188 @@
+package de.minestar.library.plugin.tests;
+
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.minestar.library.plugin.annotations.Plugin;
+import de.minestar.library.plugin.units.ClassInfo;
+
+public class ClassInfoCheck {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        // long and double take two slots, tags 15 to 20 come from newer compilers
+        System.out.println("---------------------------------------");
+        System.out.println("Reading crafted class files...");
+        System.out.println("---------------------------------------");
+        ClassInfo sample = ClassInfo.read(new ByteArrayInputStream(createClass("pkg/Sample", "java/lang/Object", "pkg/Api", true)));
+        check("name", "pkg.Sample", sample.getName());
+        check("superclass", "java.lang.Object", sample.getSuperName());
+        check("interfaces", "[pkg.Api]", Arrays.toString(sample.getInterfaces()));
+        check("string value", "2.5", sample.getAnnotationValue(Plugin.class, "version"));
+        check("long value", 123L, sample.getAnnotationValue(Plugin.class, "count"));
+        check("double value", 1.5d, sample.getAnnotationValue(Plugin.class, "ratio"));
+        check("referenced classes", "[java.lang.Object, pkg.Api]", sample.getReferencedClasses().toString());
+
+        // interfaces of superclasses and super-interfaces
+        Map<String, ClassInfo> classInfos = new HashMap<String, ClassInfo>();
+        for (byte[] bytes : new byte[][] { createClass("pkg/Api", "java/lang/Object", null, false), createClass("pkg/Special", "java/lang/Object", "pkg/Api", false), createClass("pkg/Base", "java/lang/Object", "pkg/Special", false), createClass("pkg/Sub", "pkg/Base", null, false) }) {
+            ClassInfo classInfo = ClassInfo.read(new ByteArrayInputStream(bytes));
+            classInfos.put(classInfo.getName(), classInfo);
+        }
+        check("inherited interfaces", "[pkg.Special, pkg.Api]", Arrays.toString(classInfos.get("pkg.Sub").getAllInterfaces(classInfos)));
+
+        System.out.println("\n---------------------------------------");
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks FAILED");
+        System.out.println("---------------------------------------");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        boolean passed = expected.equals(actual);
+        System.out.println((passed ? "OK     " : "FAILED ") + name + ": " + actual + (passed ? "" : " (expected " + expected + ")"));
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    private static byte[] createClass(String name, String superName, String interfaceName, boolean constants) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0);
+        output.writeShort(52);
+
+        // #1-#6: this, super and interface, every one a class and its name
+        output.writeShort(constants ? 31 : 7);
+        writeClass(output, 1, name);
+        writeClass(output, 3, superName);
+        writeClass(output, 5, interfaceName != null ? interfaceName : "java/lang/Object");
+        if (constants) {
+            // #7-#8: long, #9-#10: double
+            output.writeByte(5);
+            output.writeLong(123L);
+            output.writeByte(6);
+            output.writeDouble(1.5d);
+
+            // #11-#13: name and type, #14: Dynamic, #15: InvokeDynamic
+            output.writeByte(12);
+            output.writeShort(12);
+            output.writeShort(13);
+            writeUtf(output, "run");
+            writeUtf(output, "()V");
+            output.writeByte(17);
+            output.writeShort(0);
+            output.writeShort(11);
+            output.writeByte(18);
+            output.writeShort(0);
+            output.writeShort(11);
+
+            // #16-#17: Module, #18-#19: Package
+            output.writeByte(19);
+            output.writeShort(17);
+            writeUtf(output, "sample.module");
+            output.writeByte(20);
+            output.writeShort(19);
+            writeUtf(output, "pkg");
+
+            // #20: MethodHandle, #21: Methodref, #22: MethodType, #23: Integer, #24: Float
+            output.writeByte(15);
+            output.writeByte(6);
+            output.writeShort(21);
+            output.writeByte(10);
+            output.writeShort(3);
+            output.writeShort(11);
+            output.writeByte(16);
+            output.writeShort(13);
+            output.writeByte(3);
+            output.writeInt(7);
+            output.writeByte(4);
+            output.writeFloat(0.5f);
+
+            // #25-#30: the annotation
+            writeUtf(output, "L" + Plugin.class.getName().replace('.', '/') + ";");
+            writeUtf(output, "RuntimeVisibleAnnotations");
+            writeUtf(output, "version");
+            writeUtf(output, "2.5");
+            writeUtf(output, "count");
+            writeUtf(output, "ratio");
+        }
+
+        // access flags, this, super and interfaces, no fields and methods
+        output.writeShort(0x0021);
+        output.writeShort(1);
+        output.writeShort(3);
+        output.writeShort(interfaceName != null ? 1 : 0);
+        if (interfaceName != null) {
+            output.writeShort(5);
+        }
+        output.writeShort(0);
+        output.writeShort(0);
+
+        // @Plugin(version = "2.5", count = 123L, ratio = 1.5d)
+        if (!constants) {
+            output.writeShort(0);
+        } else {
+            output.writeShort(1);
+            output.writeShort(26);
+            output.writeInt(2 + 2 + 2 + 3 * 5);
+            output.writeShort(1);
+            output.writeShort(25);
+            output.writeShort(3);
+            writeElement(output, 27, 's', 28);
+            writeElement(output, 29, 'J', 7);
+            writeElement(output, 30, 'D', 9);
+        }
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeClass(DataOutputStream output, int index, String name) throws IOException {
+        output.writeByte(7);
+        output.writeShort(index + 1);
+        writeUtf(output, name);
+    }
+
+    private static void writeUtf(DataOutputStream output, String text) throws IOException {
+        output.writeByte(1);
+        output.writeUTF(text);
+    }
+
+    private static void writeElement(DataOutputStream output, int nameIndex, char tag, int valueIndex) throws IOException {
+        output.writeShort(nameIndex);
+        output.writeByte(tag);
+        output.writeShort(valueIndex);
+    }
+}
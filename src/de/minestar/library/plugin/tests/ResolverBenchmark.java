@@ -0,0 +1,107 @@
+package de.minestar.library.plugin.tests;
+
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import de.minestar.library.plugin.PluginManager;
+
+public class ResolverBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File folder = new File(args[0]);
+        folder.mkdirs();
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 28;
+        long limit = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        // A requires B1:[9.0], which doesn't exist, and B2..BK, which exist in 1.0 and 2.0
+        System.out.println("---------------------------------------");
+        System.out.println("Creating " + (count * 2 + 1) + " plugins...");
+        System.out.println("---------------------------------------");
+        StringBuilder dependencies = new StringBuilder("\"B1:[9.0]\"");
+        for (int index = 2; index <= count; index++) {
+            dependencies.append(", \"B").append(index).append('"');
+        }
+        createJar(folder, "A", "1.0", dependencies.toString());
+        for (int index = 1; index <= count; index++) {
+            createJar(folder, "B" + index, "1.0", "");
+            createJar(folder, "B" + index, "2.0", "");
+        }
+
+        // measure
+        long start = System.nanoTime();
+        PluginManager pm = new PluginManager(folder, false);
+        long time = (System.nanoTime() - start) / 1000000;
+
+        boolean resolved = !pm.hasPlugin("A");
+        for (int index = 1; index <= count; index++) {
+            resolved &= pm.hasPlugin("B" + index);
+        }
+        System.out.println("\n---------------------------------------");
+        System.out.println("Resolved " + (count * 2 + 1) + " plugins in " + time + "ms");
+        System.out.println("Selection: " + (resolved ? "correct" : "WRONG"));
+        System.out.println("---------------------------------------");
+        if (!resolved || time > limit) {
+            System.exit(1);
+        }
+    }
+
+    private static void createJar(File folder, String name, String version, String dependencies) throws IOException {
+        // compile the plugin against the classpath of this process
+        File sourceFolder = Files.createTempDirectory("resolver").toFile();
+        File source = new File(sourceFolder, name + ".java");
+        String code = "@de.minestar.library.plugin.annotations.Plugin(version = \"" + version + "\", dependencies = {" + dependencies + "})\n" + "public class " + name + " extends de.minestar.library.plugin.ExternalPlugin {\n}\n";
+        Files.write(source.toPath(), code.getBytes(StandardCharsets.UTF_8));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, "-cp", System.getProperty("java.class.path"), "-d", sourceFolder.getPath(), source.getPath()) != 0) {
+            throw new IOException("Could not compile " + name);
+        }
+
+        // pack the class
+        File classFile = new File(sourceFolder, name + ".class");
+        List<File> files = new ArrayList<File>();
+        files.add(source);
+        files.add(classFile);
+        try (JarOutputStream output = new JarOutputStream(new FileOutputStream(new File(folder, name + "-" + version + ".jar")))) {
+            output.putNextEntry(new JarEntry(classFile.getName()));
+            output.write(Files.readAllBytes(classFile.toPath()));
+            output.closeEntry();
+        }
+        for (File file : files) {
+            file.delete();
+        }
+        sourceFolder.delete();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.minestar.library.plugin.PluginManager;
+import de.minestar.library.plugin.units.JarFingerprint;
+
+public class CdsArchiveTool {
+
+    public static final String ARCHIVE_FILE = "plugins.jsa";
+    public static final String CLASS_LIST_FILE = "plugins.classlist";
+    public static final String FINGERPRINT_FILE = "plugins.fingerprints";
+
+    private final File pluginFolder, archiveFolder;
+
+    public CdsArchiveTool(File pluginFolder, File archiveFolder) {
+        this.pluginFolder = pluginFolder;
+        this.archiveFolder = archiveFolder;
+    }
+
+    public boolean train() throws IOException, InterruptedException {
+        // the training run dumps the dynamic archive, when its JVM exits
+        this.archiveFolder.mkdirs();
+        File archive = this.getArchiveFile();
+        archive.delete();
+        List<String> command = this.createCommand(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath()), CdsArchiveTool.class.getName(), "record", this.pluginFolder.getAbsolutePath(), this.archiveFolder.getAbsolutePath());
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        return process.waitFor() == 0 && archive.exists();
+    }
+
+    public boolean isArchiveValid() throws IOException {
+        // the archive is only valid for the JARs of the training run
+        File fingerprints = new File(this.archiveFolder, FINGERPRINT_FILE);
+        if (!this.getArchiveFile().exists() || !fingerprints.exists()) {
+            return false;
+        }
+        return readFingerprints(fingerprints).equals(this.fetchFingerprints());
+    }
+
+    public List<String> getJvmOptions() throws IOException {
+        if (this.isArchiveValid()) {
+            return Collections.singletonList("-XX:SharedArchiveFile=" + this.getArchiveFile().getAbsolutePath());
+        }
+        return Collections.emptyList();
+    }
+
+    public int launch(String mainClass, String... args) throws IOException, InterruptedException {
+        // create a new archive, if the JARs have changed
+        if (!this.isArchiveValid() && !this.train()) {
+            System.err.println("Could not create CDS archive, launching without it!");
+        }
+        Process process = new ProcessBuilder(this.createCommand(this.getJvmOptions(), mainClass, args)).inheritIO().start();
+        return process.waitFor();
+    }
+
+    public List<String> createCommand(List<String> jvmOptions, String mainClass, String... args) {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass);
+        command.addAll(Arrays.asList(args));
+        return command;
+    }
+
+    private void record() throws IOException {
+        // scan and enable
+        PluginManager pluginManager = new PluginManager(this.pluginFolder, true);
+
+        // write the classes per JAR
+        PrintWriter writer = new PrintWriter(new FileWriter(new File(this.archiveFolder, CLASS_LIST_FILE)));
+        try {
+            for (Map.Entry<File, List<String>> entry : pluginManager.getPluginClasses().entrySet()) {
+                for (String className : entry.getValue()) {
+                    writer.println(entry.getKey().getAbsolutePath() + "\t" + className);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+
+        // write the fingerprints
+        writer = new PrintWriter(new FileWriter(new File(this.archiveFolder, FINGERPRINT_FILE)));
+        try {
+            for (Map.Entry<String, String> entry : this.fetchFingerprints().entrySet()) {
+                writer.println(entry.getValue() + "\t" + entry.getKey());
+            }
+        } finally {
+            writer.close();
+        }
+
+        pluginManager.disablePlugins();
+    }
+
+    private Map<String, String> fetchFingerprints() throws IOException {
+        Map<String, String> map = new TreeMap<String, String>();
+        for (File file : PluginManager.findPluginSources(this.pluginFolder)) {
+            // classes of exploded plugins can't be archived
+            if (file.isFile()) {
+                map.put(file.getAbsolutePath(), JarFingerprint.of(file));
+            }
+        }
+        return map;
+    }
+
+    private static Map<String, String> readFingerprints(File file) throws IOException {
+        Map<String, String> map = new TreeMap<String, String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int index = line.indexOf('\t');
+                if (index > 0) {
+                    map.put(line.substring(index + 1), line.substring(0, index));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return map;
+    }
+
+    public File getArchiveFile() {
+        return new File(this.archiveFolder, ARCHIVE_FILE);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length >= 2 && args[0].equals("run")) {
+            // plain startup, used by training and benchmarks
+            new PluginManager(new File(args[1]), true).disablePlugins();
+            return;
+        }
+        if (args.length < 3) {
+            System.err.println("Usage: CdsArchiveTool train <pluginFolder> <archiveFolder>");
+            System.err.println("       CdsArchiveTool launch <pluginFolder> <archiveFolder> <mainClass> [args...]");
+            System.err.println("       CdsArchiveTool run <pluginFolder>");
+            System.exit(1);
+        }
+
+        CdsArchiveTool tool = new CdsArchiveTool(new File(args[1]), new File(args[2]));
+        if (args[0].equals("record")) {
+            tool.record();
+        } else if (args[0].equals("train")) {
+            System.exit(tool.train() ? 0 : 1);
+        } else if (args[0].equals("launch") && args.length >= 4) {
+            System.exit(tool.launch(args[3], Arrays.copyOfRange(args, 4, args.length)));
+        } else {
+            System.err.println("Unknown mode: " + args[0]);
+            System.exit(1);
+        }
+    }
+
+}
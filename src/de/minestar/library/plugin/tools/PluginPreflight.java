@@ -0,0 +1,503 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.tools;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.minestar.library.plugin.ExternalPlugin;
+import de.minestar.library.plugin.PluginHandle;
+import de.minestar.library.plugin.PluginManager;
+import de.minestar.library.plugin.annotations.CallMethod;
+import de.minestar.library.plugin.annotations.EventHandler;
+import de.minestar.library.plugin.annotations.Extension;
+import de.minestar.library.plugin.annotations.InjectPlugin;
+import de.minestar.library.plugin.annotations.Plugin;
+import de.minestar.library.plugin.annotations.PostEnable;
+import de.minestar.library.plugin.annotations.PreDisable;
+import de.minestar.library.plugin.annotations.Warmup;
+import de.minestar.library.plugin.logging.LogLevel;
+import de.minestar.library.plugin.units.ClassInfo;
+import de.minestar.library.plugin.units.PreflightIssue;
+import de.minestar.library.plugin.units.PreflightReport;
+import de.minestar.library.plugin.units.SourceScanner;
+import de.minestar.library.plugin.units.Version;
+import de.minestar.library.plugin.units.VersionRange;
+
+public class PluginPreflight {
+
+    private final File pluginFolder;
+    private final Queue<PreflightIssue> issues;
+    private final Queue<PluginInfo> plugins;
+    private final AtomicInteger classes;
+    private final SourceScanner.Listener scanListener;
+
+    public PluginPreflight(File pluginFolder) {
+        this.pluginFolder = pluginFolder;
+        this.issues = new ConcurrentLinkedQueue<PreflightIssue>();
+        this.plugins = new ConcurrentLinkedQueue<PluginInfo>();
+        this.classes = new AtomicInteger();
+        this.scanListener = new SourceScanner.Listener() {
+            @Override
+            public void resourceFound(File source, String name) {
+                // resources aren't checked
+            }
+
+            @Override
+            public void readFailed(File source, String name, IOException cause) {
+                report(LogLevel.ERROR, source, name, null, (name != null ? "Class file could not be read: " : "Source could not be read: ") + cause.getMessage());
+            }
+        };
+    }
+
+    public PreflightReport check() throws IOException {
+        return this.check(Runtime.getRuntime().availableProcessors());
+    }
+
+    public synchronized PreflightReport check(int parallelism) throws IOException {
+        long start = System.nanoTime();
+        this.issues.clear();
+        this.plugins.clear();
+        this.classes.set(0);
+
+        // one task per source, which forks one task per plugin- and extension-class
+        List<File> sources = this.removeDuplicates(PluginManager.findPluginSources(this.pluginFolder));
+        final List<SourceTask> tasks = new ArrayList<SourceTask>(sources.size());
+        for (File source : sources) {
+            tasks.add(new SourceTask(source));
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        // the dependencies need all plugins
+        this.checkDependencies();
+        return new PreflightReport(this.pluginFolder.getAbsolutePath(), sources.size(), this.classes.get(), this.plugins.size(), System.nanoTime() - start, this.issues);
+    }
+
+    private List<File> removeDuplicates(List<File> sources) {
+        // the manager loads identical JARs only once, the first one in the sorted order
+        Map<File, File> duplicates = SourceScanner.findDuplicates(sources, this.scanListener);
+        for (Map.Entry<File, File> entry : duplicates.entrySet()) {
+            this.report(LogLevel.WARNING, entry.getKey(), null, null, "Duplicate of " + entry.getValue().getPath() + ", it is skipped");
+        }
+        List<File> remaining = new ArrayList<File>(sources);
+        remaining.removeAll(duplicates.keySet());
+        return remaining;
+    }
+
+    private void report(LogLevel severity, File source, String className, String element, String message) {
+        this.issues.add(new PreflightIssue(severity, source != null ? source.getPath() : null, className, element, message));
+    }
+
+    private class SourceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File source;
+
+        private SourceTask(File source) {
+            this.source = source;
+        }
+
+        @Override
+        protected void compute() {
+            // read the class files without loading them
+            List<ClassInfo> classInfos;
+            try {
+                classInfos = SourceScanner.scan(this.source, scanListener);
+            } catch (IOException print) {
+                report(LogLevel.ERROR, this.source, null, null, "Source could not be read: " + print.getMessage());
+                return;
+            }
+            classes.addAndGet(classInfos.size());
+
+            // only plugins and extensions are loaded, their classes are never initialized
+            URLClassLoader classLoader;
+            try {
+                URL url = this.source.isDirectory() ? this.source.toURI().toURL() : new URL("jar:file:" + this.source.getAbsolutePath() + "!/");
+                classLoader = URLClassLoader.newInstance(new URL[] { url }, PluginPreflight.class.getClassLoader());
+            } catch (IOException print) {
+                report(LogLevel.ERROR, this.source, null, null, "Source could not be opened: " + print.getMessage());
+                return;
+            }
+            try {
+                List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+                Set<String> names = new HashSet<String>();
+                Map<String, ClassInfo> byName = new HashMap<String, ClassInfo>();
+                for (ClassInfo classInfo : classInfos) {
+                    byName.put(classInfo.getName(), classInfo);
+                }
+                for (ClassInfo classInfo : classInfos) {
+                    if (classInfo.hasAnnotation(Plugin.class)) {
+                        PluginInfo pluginInfo = this.readPluginInfo(classInfo);
+                        if (!names.add(pluginInfo.name)) {
+                            report(LogLevel.ERROR, this.source, classInfo.getName(), null, "A plugin named '" + pluginInfo.name + "' exists twice in this source, only one is loaded");
+                        }
+                        tasks.add(new PluginTask(this.source, classLoader, classInfo, pluginInfo));
+                    } else if (classInfo.hasAnnotation(Extension.class)) {
+                        tasks.add(new ExtensionTask(this.source, classLoader, classInfo, classInfo.getAllInterfaces(byName)));
+                    }
+                }
+                invokeAll(tasks);
+            } finally {
+                try {
+                    classLoader.close();
+                } catch (IOException ignored) {
+                    // the classloader is dropped anyway
+                }
+            }
+        }
+
+        private PluginInfo readPluginInfo(ClassInfo classInfo) {
+            // "UNKNOWN" is the default version
+            String className = classInfo.getName();
+            Object version = classInfo.getAnnotationValue(Plugin.class, "version");
+            PluginInfo pluginInfo = new PluginInfo(this.source, className, className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1), version != null ? (String) version : "UNKNOWN");
+            pluginInfo.parsedVersion = Version.parse(pluginInfo.version);
+            if (version == null) {
+                report(LogLevel.WARNING, this.source, className, "version", "No version given, 'UNKNOWN' is older than every numeric version");
+            } else if (!pluginInfo.parsedVersion.isNumeric()) {
+                report(LogLevel.ERROR, this.source, className, "version", "Version '" + pluginInfo.version + "' has no numeric segment and is older than every numeric version");
+            }
+
+            // "Name" or "Name:range"
+            Object dependencies = classInfo.getAnnotationValue(Plugin.class, "dependencies");
+            if (dependencies instanceof List) {
+                for (Object dependency : (List<?>) dependencies) {
+                    String text = (String) dependency;
+                    int colon = text.indexOf(':');
+                    String name = (colon < 0 ? text : text.substring(0, colon)).trim();
+                    try {
+                        pluginInfo.dependencies.put(name, colon < 0 ? VersionRange.ANY : VersionRange.parse(text.substring(colon + 1)));
+                    } catch (IllegalArgumentException print) {
+                        report(LogLevel.ERROR, this.source, className, "dependencies", print.getMessage());
+                    }
+                }
+            }
+            plugins.add(pluginInfo);
+            return pluginInfo;
+        }
+    }
+
+    private class PluginTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File source;
+        private final ClassLoader classLoader;
+        private final ClassInfo classInfo;
+        private final PluginInfo pluginInfo;
+
+        private PluginTask(File source, ClassLoader classLoader, ClassInfo classInfo, PluginInfo pluginInfo) {
+            this.source = source;
+            this.classLoader = classLoader;
+            this.classInfo = classInfo;
+            this.pluginInfo = pluginInfo;
+        }
+
+        @Override
+        protected void compute() {
+            String className = this.classInfo.getName();
+            try {
+                Class<?> clazz = Class.forName(className, false, this.classLoader);
+
+                // the manager ignores these classes without a word
+                if (!ExternalPlugin.class.isAssignableFrom(clazz)) {
+                    report(LogLevel.ERROR, this.source, className, null, "Plugin does not extend ExternalPlugin and is ignored");
+                    return;
+                }
+                checkConstructor(this.source, clazz);
+
+                // hooks
+                for (Method method : clazz.getDeclaredMethods()) {
+                    this.checkHook(method, PostEnable.class);
+                    this.checkHook(method, PreDisable.class);
+                    this.checkHook(method, Warmup.class);
+                    Warmup warmup = method.getAnnotation(Warmup.class);
+                    if (warmup != null && warmup.iterations() <= 0) {
+                        report(LogLevel.WARNING, this.source, className, method.getName() + "()", "Warmup has no iterations");
+                    }
+                    if (method.isAnnotationPresent(EventHandler.class) && method.getParameterTypes().length != 1) {
+                        report(LogLevel.ERROR, this.source, className, method.getName() + "()", "EventHandler must take exactly one argument, it is never called");
+                    }
+                    CallMethod callMethod = method.getAnnotation(CallMethod.class);
+                    if (callMethod != null) {
+                        this.checkCallMethod(clazz, method, callMethod);
+                    }
+                }
+
+                // injections
+                for (Field field : clazz.getDeclaredFields()) {
+                    InjectPlugin injectPlugin = field.getAnnotation(InjectPlugin.class);
+                    if (injectPlugin != null) {
+                        this.checkInjection(field, injectPlugin);
+                    }
+                }
+            } catch (ClassNotFoundException print) {
+                report(LogLevel.ERROR, this.source, className, null, "Class could not be loaded: " + print.getMessage());
+            } catch (LinkageError print) {
+                report(LogLevel.ERROR, this.source, className, null, "Class could not be linked: " + print);
+            }
+        }
+
+        private void checkHook(Method method, Class<? extends Annotation> hook) {
+            if (!method.isAnnotationPresent(hook)) {
+                return;
+            }
+            String element = method.getName() + "()";
+            if (method.getParameterTypes().length > 0) {
+                report(LogLevel.ERROR, this.source, this.classInfo.getName(), element, hook.getSimpleName() + " must not take arguments, it is never called");
+            }
+            if (method.getReturnType() != void.class) {
+                report(LogLevel.WARNING, this.source, this.classInfo.getName(), element, hook.getSimpleName() + " returns " + method.getReturnType().getSimpleName() + ", the value is ignored");
+            }
+        }
+
+        private void checkCallMethod(Class<?> clazz, Method method, CallMethod callMethod) {
+            // the call is skipped at runtime, if a field doesn't match its argument
+            String element = method.getName() + "()";
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            String[] fieldNames = callMethod.fieldNames();
+            if (fieldNames.length != parameterTypes.length) {
+                report(LogLevel.ERROR, this.source, this.classInfo.getName(), element, "CallMethod names " + fieldNames.length + " fields for " + parameterTypes.length + " arguments");
+                return;
+            }
+            for (int index = 0; index < fieldNames.length; index++) {
+                try {
+                    Field field = clazz.getDeclaredField(fieldNames[index]);
+                    if (!field.getType().equals(parameterTypes[index])) {
+                        report(LogLevel.ERROR, this.source, this.classInfo.getName(), element, "CallMethod field '" + fieldNames[index] + "' is " + field.getType().getSimpleName() + ", but argument " + index + " is " + parameterTypes[index].getSimpleName() + ", the call is skipped");
+                    }
+                } catch (NoSuchFieldException print) {
+                    report(LogLevel.ERROR, this.source, this.classInfo.getName(), element, "CallMethod field '" + fieldNames[index] + "' does not exist");
+                }
+            }
+        }
+
+        private void checkInjection(Field field, InjectPlugin injectPlugin) {
+            // handles need an explicit name, plugins are found by their type
+            boolean handle = PluginHandle.class.equals(field.getType());
+            String target = injectPlugin.value();
+            if (target.isEmpty()) {
+                if (handle) {
+                    report(LogLevel.ERROR, this.source, this.classInfo.getName(), field.getName(), "InjectPlugin needs the name of the injected plugin");
+                    return;
+                }
+                target = field.getType().getSimpleName();
+            }
+            if (!this.pluginInfo.dependencies.containsKey(target)) {
+                report(LogLevel.ERROR, this.source, this.classInfo.getName(), field.getName(), "InjectPlugin injects '" + target + "', which is not a dependency");
+            }
+        }
+    }
+
+    private class ExtensionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File source;
+        private final ClassLoader classLoader;
+        private final ClassInfo classInfo;
+        private final String[] interfaces;
+
+        private ExtensionTask(File source, ClassLoader classLoader, ClassInfo classInfo, String[] interfaces) {
+            this.source = source;
+            this.classLoader = classLoader;
+            this.classInfo = classInfo;
+            this.interfaces = interfaces;
+        }
+
+        @Override
+        protected void compute() {
+            String className = this.classInfo.getName();
+            // inherited interfaces count as well
+            if (this.interfaces.length == 0) {
+                report(LogLevel.WARNING, this.source, className, null, "Extension implements no interface and is never found");
+            }
+            try {
+                checkConstructor(this.source, Class.forName(className, false, this.classLoader));
+            } catch (ClassNotFoundException print) {
+                report(LogLevel.ERROR, this.source, className, null, "Class could not be loaded: " + print.getMessage());
+            } catch (LinkageError print) {
+                report(LogLevel.ERROR, this.source, className, null, "Class could not be linked: " + print);
+            }
+        }
+    }
+
+    private void checkConstructor(File source, Class<?> clazz) {
+        // instances are created with Class.newInstance()
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+            this.report(LogLevel.ERROR, source, clazz.getName(), null, "Class is abstract and can't be instantiated");
+            return;
+        }
+        if (!Modifier.isPublic(clazz.getModifiers())) {
+            this.report(LogLevel.ERROR, source, clazz.getName(), null, "Class must be public");
+        }
+        try {
+            clazz.getConstructor();
+        } catch (NoSuchMethodException print) {
+            this.report(LogLevel.ERROR, source, clazz.getName(), "<init>()", "Class needs a public constructor without arguments");
+        }
+    }
+
+    private void checkDependencies() {
+        // index the plugins by name
+        Map<String, List<PluginInfo>> byName = new HashMap<String, List<PluginInfo>>();
+        for (PluginInfo pluginInfo : this.plugins) {
+            List<PluginInfo> versions = byName.get(pluginInfo.name);
+            if (versions == null) {
+                versions = new ArrayList<PluginInfo>();
+                byName.put(pluginInfo.name, versions);
+            }
+            for (PluginInfo other : versions) {
+                if (pluginInfo.parsedVersion.compareTo(other.parsedVersion) == 0 && !pluginInfo.source.equals(other.source)) {
+                    this.report(LogLevel.ERROR, pluginInfo.source, pluginInfo.className, "version", "Version " + pluginInfo.version + " also exists in " + other.source.getPath());
+                }
+            }
+            versions.add(pluginInfo);
+        }
+
+        // every dependency needs a version in its range
+        for (PluginInfo pluginInfo : this.plugins) {
+            for (Map.Entry<String, VersionRange> dependency : pluginInfo.dependencies.entrySet()) {
+                List<PluginInfo> versions = byName.get(dependency.getKey());
+                if (versions == null) {
+                    this.report(LogLevel.ERROR, pluginInfo.source, pluginInfo.className, "dependencies", "Missing dependency '" + dependency.getKey() + "'");
+                    continue;
+                }
+                boolean found = false;
+                for (PluginInfo version : versions) {
+                    found |= dependency.getValue().contains(version.parsedVersion);
+                }
+                if (!found) {
+                    this.report(LogLevel.ERROR, pluginInfo.source, pluginInfo.className, "dependencies", "No version of '" + dependency.getKey() + "' matches " + dependency.getValue());
+                }
+            }
+        }
+
+        // circular dependencies, every cycle is reported once
+        Map<String, Integer> states = new HashMap<String, Integer>();
+        for (String name : byName.keySet()) {
+            this.findCycles(name, byName, states, new ArrayList<String>());
+        }
+    }
+
+    private void findCycles(String name, Map<String, List<PluginInfo>> byName, Map<String, Integer> states, List<String> path) {
+        // 1 = on the path, 2 = done
+        Integer state = states.get(name);
+        if (state != null) {
+            if (state == 1) {
+                List<String> cycle = new ArrayList<String>(path.subList(path.indexOf(name), path.size()));
+                cycle.add(name);
+                PluginInfo first = byName.get(name).get(0);
+                this.report(LogLevel.ERROR, first.source, first.className, "dependencies", "Circular dependency " + cycle);
+            }
+            return;
+        }
+        List<PluginInfo> versions = byName.get(name);
+        if (versions == null) {
+            return;
+        }
+        states.put(name, 1);
+        path.add(name);
+        Set<String> dependencies = new HashSet<String>();
+        for (PluginInfo version : versions) {
+            dependencies.addAll(version.dependencies.keySet());
+        }
+        for (String dependency : dependencies) {
+            this.findCycles(dependency, byName, states, path);
+        }
+        path.remove(path.size() - 1);
+        states.put(name, 2);
+    }
+
+    private static class PluginInfo {
+
+        private final File source;
+        private final String className, name, version;
+        private final Map<String, VersionRange> dependencies;
+        private Version parsedVersion;
+
+        private PluginInfo(File source, String className, String name, String version) {
+            this.source = source;
+            this.className = className;
+            this.name = name;
+            this.version = version;
+            this.dependencies = new HashMap<String, VersionRange>();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PluginPreflight <pluginFolder> [reportFile]");
+            System.exit(2);
+        }
+
+        // the exit code gates the deploy
+        PreflightReport report = new PluginPreflight(new File(args[0])).check();
+        if (args.length >= 2) {
+            Writer writer = new FileWriter(args[1]);
+            try {
+                writer.write(report.toJson());
+            } finally {
+                writer.close();
+            }
+        } else {
+            System.out.println(report.toJson());
+        }
+        System.exit(report.hasErrors() ? 1 : 0);
+    }
+
+}
@@ -0,0 +1,284 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ClassInfo {
+
+    private final String name, superName;
+    private final String[] interfaces;
+    private final Map<String, Map<String, Object>> annotations;
+    private final Set<String> referencedClasses;
+
+    private ClassInfo(String name, String superName, String[] interfaces, Map<String, Map<String, Object>> annotations, Set<String> referencedClasses) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.annotations = annotations;
+        this.referencedClasses = referencedClasses;
+    }
+
+    public static ClassInfo read(InputStream inputStream) throws IOException {
+        // read the class file without defining the class
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file!");
+        }
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+
+        // constant pool
+        int count = input.readUnsignedShort();
+        Object[] pool = new Object[count];
+        int[] classes = new int[count];
+        for (int index = 1; index < count; index++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1 :
+                    pool[index] = input.readUTF();
+                    break;
+                case 3 :
+                    pool[index] = input.readInt();
+                    break;
+                case 4 :
+                    pool[index] = input.readFloat();
+                    break;
+                case 5 :
+                    pool[index++] = input.readLong();
+                    break;
+                case 6 :
+                    pool[index++] = input.readDouble();
+                    break;
+                case 7 :
+                    classes[index] = input.readUnsignedShort();
+                    break;
+                case 8 :
+                case 16 :
+                case 19 :
+                case 20 :
+                    input.readUnsignedShort();
+                    break;
+                case 15 :
+                    input.readUnsignedByte();
+                    input.readUnsignedShort();
+                    break;
+                case 9 :
+                case 10 :
+                case 11 :
+                case 12 :
+                case 17 :
+                case 18 :
+                    input.readInt();
+                    break;
+                default :
+                    throw new IOException("Unknown constant pool tag " + tag + "!");
+            }
+        }
+
+        // class, superclass and interfaces
+        input.readUnsignedShort();
+        String name = toClassName((String) pool[classes[input.readUnsignedShort()]]);
+        int superIndex = input.readUnsignedShort();
+        String superName = superIndex != 0 ? toClassName((String) pool[classes[superIndex]]) : null;
+        String[] interfaces = new String[input.readUnsignedShort()];
+        for (int index = 0; index < interfaces.length; index++) {
+            interfaces[index] = toClassName((String) pool[classes[input.readUnsignedShort()]]);
+        }
+
+        // fields and methods are skipped
+        for (int members = 0; members < 2; members++) {
+            int memberCount = input.readUnsignedShort();
+            for (int member = 0; member < memberCount; member++) {
+                input.readUnsignedShort();
+                input.readUnsignedShort();
+                input.readUnsignedShort();
+                skipAttributes(input);
+            }
+        }
+
+        // class attributes, only the visible annotations are of interest
+        Map<String, Map<String, Object>> annotations = new HashMap<String, Map<String, Object>>();
+        int attributeCount = input.readUnsignedShort();
+        for (int attribute = 0; attribute < attributeCount; attribute++) {
+            String attributeName = (String) pool[input.readUnsignedShort()];
+            int length = input.readInt();
+            if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+                int annotationCount = input.readUnsignedShort();
+                for (int annotation = 0; annotation < annotationCount; annotation++) {
+                    String type = toClassName((String) pool[input.readUnsignedShort()]);
+                    annotations.put(type, readAnnotation(input, pool));
+                }
+            } else {
+                skip(input, length);
+            }
+        }
+
+        // every class in the constant pool is referenced by this class
+        Set<String> referencedClasses = new LinkedHashSet<String>();
+        for (int index = 1; index < count; index++) {
+            if (classes[index] != 0) {
+                String referenced = toClassName((String) pool[classes[index]]);
+                if (referenced != null && !referenced.equals(name)) {
+                    referencedClasses.add(referenced);
+                }
+            }
+        }
+        return new ClassInfo(name, superName, interfaces, annotations, Collections.unmodifiableSet(referencedClasses));
+    }
+
+    private static Map<String, Object> readAnnotation(DataInputStream input, Object[] pool) throws IOException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        int pairs = input.readUnsignedShort();
+        for (int pair = 0; pair < pairs; pair++) {
+            String elementName = (String) pool[input.readUnsignedShort()];
+            values.put(elementName, readElementValue(input, pool));
+        }
+        return values;
+    }
+
+    private static Object readElementValue(DataInputStream input, Object[] pool) throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case 'e' :
+                // enums are stored by the name of the constant
+                input.readUnsignedShort();
+                return pool[input.readUnsignedShort()];
+            case 'c' :
+                return toClassName((String) pool[input.readUnsignedShort()]);
+            case '@' :
+                input.readUnsignedShort();
+                return readAnnotation(input, pool);
+            case '[' :
+                int length = input.readUnsignedShort();
+                List<Object> values = new ArrayList<Object>(length);
+                for (int index = 0; index < length; index++) {
+                    values.add(readElementValue(input, pool));
+                }
+                return values;
+            default :
+                // primitives and strings
+                return pool[input.readUnsignedShort()];
+        }
+    }
+
+    private static void skipAttributes(DataInputStream input) throws IOException {
+        int attributeCount = input.readUnsignedShort();
+        for (int attribute = 0; attribute < attributeCount; attribute++) {
+            input.readUnsignedShort();
+            skip(input, input.readInt());
+        }
+    }
+
+    private static void skip(DataInputStream input, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = input.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of class file!");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static String toClassName(String internalName) {
+        // "Lcom/example/Type;" from descriptors, "[Lcom/example/Type;" from arrays
+        String name = internalName;
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        name = name.substring(dimensions);
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        } else if (dimensions > 0) {
+            // primitive arrays
+            return null;
+        }
+        return name.replace('/', '.');
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getSuperName() {
+        return this.superName;
+    }
+
+    public String[] getInterfaces() {
+        return this.interfaces;
+    }
+
+    public String[] getAllInterfaces(Map<String, ClassInfo> classInfos) {
+        // the interfaces of the superclasses and super-interfaces as well, as far as they were scanned
+        Set<String> interfaceNames = new LinkedHashSet<String>();
+        Set<String> visited = new HashSet<String>();
+        List<ClassInfo> queue = new ArrayList<ClassInfo>();
+        queue.add(this);
+        visited.add(this.name);
+        for (int index = 0; index < queue.size(); index++) {
+            ClassInfo classInfo = queue.get(index);
+            for (String interfaceName : classInfo.interfaces) {
+                interfaceNames.add(interfaceName);
+                ClassInfo interfaceInfo = classInfos.get(interfaceName);
+                if (interfaceInfo != null && visited.add(interfaceName)) {
+                    queue.add(interfaceInfo);
+                }
+            }
+            ClassInfo superInfo = classInfo.superName != null ? classInfos.get(classInfo.superName) : null;
+            if (superInfo != null && visited.add(classInfo.superName)) {
+                queue.add(superInfo);
+            }
+        }
+        return interfaceNames.toArray(new String[interfaceNames.size()]);
+    }
+
+    public boolean hasAnnotation(Class<? extends Annotation> annotation) {
+        return this.annotations.containsKey(annotation.getName());
+    }
+
+    public Object getAnnotationValue(Class<? extends Annotation> annotation, String element) {
+        Map<String, Object> values = this.annotations.get(annotation.getName());
+        return values != null ? values.get(element) : null;
+    }
+
+    public Set<String> getReferencedClasses() {
+        return this.referencedClasses;
+    }
+
+}
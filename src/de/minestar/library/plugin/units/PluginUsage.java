@@ -0,0 +1,124 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import java.util.Comparator;
+
+public class PluginUsage {
+
+    public static final Comparator<PluginUsage> BY_CPU_TIME = new Comparator<PluginUsage>() {
+        @Override
+        public int compare(PluginUsage first, PluginUsage second) {
+            return Long.compare(second.cpuTime, first.cpuTime);
+        }
+    };
+
+    public static final Comparator<PluginUsage> BY_ALLOCATED_BYTES = new Comparator<PluginUsage>() {
+        @Override
+        public int compare(PluginUsage first, PluginUsage second) {
+            return Long.compare(second.allocatedBytes, first.allocatedBytes);
+        }
+    };
+
+    public static final Comparator<PluginUsage> BY_ENABLE_CPU_TIME = new Comparator<PluginUsage>() {
+        @Override
+        public int compare(PluginUsage first, PluginUsage second) {
+            return Long.compare(second.enableCpuTime, first.enableCpuTime);
+        }
+    };
+
+    public static final Comparator<PluginUsage> BY_CACHE_BYTES = new Comparator<PluginUsage>() {
+        @Override
+        public int compare(PluginUsage first, PluginUsage second) {
+            return Long.compare(second.cacheBytes, first.cacheBytes);
+        }
+    };
+
+    private final String name, version;
+    private final long cpuTime, allocatedBytes, invocations;
+    private final long enableCpuTime, enableAllocatedBytes;
+    private final boolean overBudget;
+    // the bytes are estimated from the cached keys and values, the weights of the caches may count anything
+    private final long cacheEntries, cacheBytes;
+
+    public PluginUsage(String name, String version, long cpuTime, long allocatedBytes, long invocations, long enableCpuTime, long enableAllocatedBytes, boolean overBudget, long cacheEntries, long cacheBytes) {
+        this.name = name;
+        this.version = version;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+        this.invocations = invocations;
+        this.enableCpuTime = enableCpuTime;
+        this.enableAllocatedBytes = enableAllocatedBytes;
+        this.overBudget = overBudget;
+        this.cacheEntries = cacheEntries;
+        this.cacheBytes = cacheBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+    public long getEnableCpuTime() {
+        return enableCpuTime;
+    }
+
+    public long getEnableAllocatedBytes() {
+        return enableAllocatedBytes;
+    }
+
+    public boolean isOverBudget() {
+        return overBudget;
+    }
+
+    public long getCacheEntries() {
+        return cacheEntries;
+    }
+
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    @Override
+    public String toString() {
+        return name + " [ v" + version + " ] cpu: " + (cpuTime / 1000000) + "ms, allocated: " + (allocatedBytes / 1024) + "kB, calls: " + invocations + ", cache: " + cacheEntries + " entries, ~" + (cacheBytes / 1024) + "kB" + (overBudget ? " (over budget)" : "");
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class PreflightIssue implements Comparable<PreflightIssue> {
+
+    private final LogLevel severity;
+    private final String source, className, element, message;
+
+    public PreflightIssue(LogLevel severity, String source, String className, String element, String message) {
+        this.severity = severity;
+        this.source = source;
+        this.className = className;
+        this.element = element;
+        this.message = message;
+    }
+
+    @Override
+    public int compareTo(PreflightIssue other) {
+        // grouped by source and class, errors first
+        int compare = compare(this.source, other.source);
+        if (compare == 0) {
+            compare = compare(this.className, other.className);
+        }
+        if (compare == 0) {
+            compare = other.severity.compareTo(this.severity);
+        }
+        if (compare == 0) {
+            compare = compare(this.element, other.element);
+        }
+        return compare;
+    }
+
+    private static int compare(String first, String second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        return first.compareTo(second);
+    }
+
+    public LogLevel getSeverity() {
+        return severity;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getElement() {
+        return element;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return this.severity + " " + (this.className != null ? this.className : this.source) + (this.element != null ? "." + this.element : "") + ": " + this.message;
+    }
+
+}
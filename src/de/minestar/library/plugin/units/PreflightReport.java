@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.minestar.library.plugin.logging.LogLevel;
+
+public class PreflightReport {
+
+    private final String pluginFolder;
+    private final int sources, classes, plugins;
+    private final long duration;
+    private final List<PreflightIssue> issues;
+
+    public PreflightReport(String pluginFolder, int sources, int classes, int plugins, long duration, Collection<PreflightIssue> issues) {
+        this.pluginFolder = pluginFolder;
+        this.sources = sources;
+        this.classes = classes;
+        this.plugins = plugins;
+        this.duration = duration;
+        List<PreflightIssue> sorted = new ArrayList<PreflightIssue>(issues);
+        Collections.sort(sorted);
+        this.issues = Collections.unmodifiableList(sorted);
+    }
+
+    public boolean hasErrors() {
+        return this.count(LogLevel.ERROR) > 0;
+    }
+
+    public int count(LogLevel severity) {
+        int count = 0;
+        for (PreflightIssue issue : this.issues) {
+            if (issue.getSeverity() == severity) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String toJson() {
+        StringBuilder builder = new StringBuilder(256 + this.issues.size() * 128);
+        builder.append("{\n  \"pluginFolder\": ");
+        appendString(builder, this.pluginFolder);
+        builder.append(",\n  \"sources\": ").append(this.sources);
+        builder.append(",\n  \"classes\": ").append(this.classes);
+        builder.append(",\n  \"plugins\": ").append(this.plugins);
+        builder.append(",\n  \"durationMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(this.duration));
+        builder.append(",\n  \"errors\": ").append(this.count(LogLevel.ERROR));
+        builder.append(",\n  \"warnings\": ").append(this.count(LogLevel.WARNING));
+        builder.append(",\n  \"issues\": [");
+        for (int index = 0; index < this.issues.size(); index++) {
+            PreflightIssue issue = this.issues.get(index);
+            builder.append(index == 0 ? "\n    {" : ",\n    {");
+            builder.append("\"severity\": ");
+            appendString(builder, issue.getSeverity().name());
+            builder.append(", \"source\": ");
+            appendString(builder, issue.getSource());
+            builder.append(", \"class\": ");
+            appendString(builder, issue.getClassName());
+            builder.append(", \"element\": ");
+            appendString(builder, issue.getElement());
+            builder.append(", \"message\": ");
+            appendString(builder, issue.getMessage());
+            builder.append('}');
+        }
+        builder.append(this.issues.isEmpty() ? "]\n}" : "\n  ]\n}");
+        return builder.toString();
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        builder.append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            switch (character) {
+                case '"' :
+                    builder.append("\\\"");
+                    break;
+                case '\\' :
+                    builder.append("\\\\");
+                    break;
+                case '\n' :
+                    builder.append("\\n");
+                    break;
+                case '\r' :
+                    builder.append("\\r");
+                    break;
+                case '\t' :
+                    builder.append("\\t");
+                    break;
+                default :
+                    if (character < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        builder.append(character);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+    public String getPluginFolder() {
+        return pluginFolder;
+    }
+
+    public int getSources() {
+        return sources;
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    public int getPlugins() {
+        return plugins;
+    }
+
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(this.duration, TimeUnit.NANOSECONDS);
+    }
+
+    public List<PreflightIssue> getIssues() {
+        return issues;
+    }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+public class SourceScanner {
+
+    public static interface Listener {
+
+        // every file of a source, that isn't a class
+        public void resourceFound(File source, String name);
+
+        // the scan goes on without the class or source
+        public void readFailed(File source, String name, IOException cause);
+    }
+
+    private SourceScanner() {
+    }
+
+    public static Map<File, File> findDuplicates(List<File> sources, Listener listener) {
+        // only JARs of the same size can have the same content
+        Map<Long, List<File>> sizes = new HashMap<Long, List<File>>();
+        for (File file : sources) {
+            if (file.isFile()) {
+                List<File> files = sizes.get(file.length());
+                if (files == null) {
+                    files = new ArrayList<File>(1);
+                    sizes.put(file.length(), files);
+                }
+                files.add(file);
+            }
+        }
+
+        // hash the candidates, the first JAR in the sorted order is the original
+        Map<File, File> duplicates = new LinkedHashMap<File, File>();
+        Map<String, File> digests = new HashMap<String, File>();
+        for (List<File> files : sizes.values()) {
+            if (files.size() < 2) {
+                continue;
+            }
+            for (File file : files) {
+                try {
+                    String digest = JarFingerprint.of(file);
+                    File original = digests.get(digest);
+                    if (original == null) {
+                        digests.put(digest, file);
+                    } else {
+                        duplicates.put(file, original);
+                    }
+                } catch (IOException print) {
+                    listener.readFailed(file, null, print);
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    public static List<ClassInfo> scan(File source, Listener listener) throws IOException {
+        // read the classes without loading them
+        return source.isDirectory() ? scanDirectory(source, listener) : scanJar(source, listener);
+    }
+
+    private static List<ClassInfo> scanJar(File file, Listener listener) throws IOException {
+        List<ClassInfo> classes = new ArrayList<ClassInfo>();
+
+        // open JAR
+        JarFile jarFile = new JarFile(file);
+        try {
+            Enumeration<JarEntry> e = jarFile.entries();
+            while (e.hasMoreElements()) {
+                JarEntry jarEntry = e.nextElement();
+                // directories are ignored, other files are resources
+                if (jarEntry.isDirectory()) {
+                    continue;
+                } else if (!jarEntry.getName().endsWith(".class")) {
+                    listener.resourceFound(file, jarEntry.getName());
+                } else {
+                    InputStream inputStream = jarFile.getInputStream(jarEntry);
+                    try {
+                        classes.add(ClassInfo.read(inputStream));
+                    } catch (IOException print) {
+                        listener.readFailed(file, jarEntry.getName(), print);
+                    } finally {
+                        inputStream.close();
+                    }
+                }
+            }
+        } finally {
+            // close JAR
+            jarFile.close();
+        }
+        return classes;
+    }
+
+    private static List<ClassInfo> scanDirectory(final File directory, final Listener listener) throws IOException {
+        final List<ClassInfo> classes = new ArrayList<ClassInfo>();
+        final Path root = directory.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                // other files are resources
+                String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!attributes.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                } else if (!name.endsWith(".class")) {
+                    listener.resourceFound(directory, name);
+                } else {
+                    try {
+                        InputStream inputStream = Files.newInputStream(file);
+                        try {
+                            classes.add(ClassInfo.read(inputStream));
+                        } finally {
+                            inputStream.close();
+                        }
+                    } catch (IOException print) {
+                        listener.readFailed(directory, name, print);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return classes;
+    }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+public class StartupProfile {
+
+    private final String name;
+    private final Set<String> roles, includes, excludes;
+
+    public StartupProfile(String name, Collection<String> roles, Collection<String> includes, Collection<String> excludes) {
+        this.name = name;
+        this.roles = Collections.unmodifiableSet(new HashSet<String>(roles));
+        this.includes = Collections.unmodifiableSet(new HashSet<String>(includes));
+        this.excludes = Collections.unmodifiableSet(new HashSet<String>(excludes));
+    }
+
+    public static StartupProfile load(File file, String name) throws IOException {
+        // "<name>.roles", "<name>.include" and "<name>.exclude", separated by commas
+        Properties properties = new Properties();
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            properties.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        if (!properties.containsKey(name + ".roles") && !properties.containsKey(name + ".include") && !properties.containsKey(name + ".exclude")) {
+            throw new IOException("Startup profile '" + name + "' is not defined in " + file + "!");
+        }
+        return new StartupProfile(name, split(properties.getProperty(name + ".roles")), split(properties.getProperty(name + ".include")), split(properties.getProperty(name + ".exclude")));
+    }
+
+    private static List<String> split(String value) {
+        List<String> list = new ArrayList<String>();
+        if (value != null) {
+            for (String element : value.split(",")) {
+                if (!element.trim().isEmpty()) {
+                    list.add(element.trim());
+                }
+            }
+        }
+        return list;
+    }
+
+    public Set<String> select(Map<String, ? extends Collection<String>> dependencies, Map<String, ? extends Collection<String>> pluginRoles) {
+        // without roles and includes, every plugin is a root
+        Set<String> selection = new LinkedHashSet<String>();
+        List<String> queue = new ArrayList<String>();
+        for (String pluginName : dependencies.keySet()) {
+            if (this.isRoot(pluginName, pluginRoles.get(pluginName)) && !this.excludes.contains(pluginName) && selection.add(pluginName)) {
+                queue.add(pluginName);
+            }
+        }
+
+        // add the transitive dependencies, excluded plugins stay out
+        for (int index = 0; index < queue.size(); index++) {
+            Collection<String> required = dependencies.get(queue.get(index));
+            if (required == null) {
+                continue;
+            }
+            for (String dependency : required) {
+                if (!this.excludes.contains(dependency) && selection.add(dependency)) {
+                    queue.add(dependency);
+                }
+            }
+        }
+        return selection;
+    }
+
+    private boolean isRoot(String pluginName, Collection<String> pluginRoles) {
+        if (this.roles.isEmpty() && this.includes.isEmpty()) {
+            return true;
+        }
+        if (this.includes.contains(pluginName)) {
+            return true;
+        }
+        return pluginRoles != null && !Collections.disjoint(this.roles, pluginRoles);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public Set<String> getIncludes() {
+        return includes;
+    }
+
+    public Set<String> getExcludes() {
+        return excludes;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " [ roles: " + this.roles + ", include: " + this.includes + ", exclude: " + this.excludes + " ]";
+    }
+
+}
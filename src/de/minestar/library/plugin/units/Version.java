@@ -0,0 +1,117 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+import java.util.Arrays;
+
+public class Version implements Comparable<Version> {
+
+    private final String text;
+    private final int[] segments;
+    private final String qualifier;
+
+    private Version(String text, int[] segments, String qualifier) {
+        this.text = text;
+        this.segments = segments;
+        this.qualifier = qualifier;
+    }
+
+    public static Version parse(String text) {
+        // numeric segments first, everything after them is the qualifier
+        String trimmed = text.trim();
+        int[] segments = new int[4];
+        int count = 0, index = 0;
+        while (index < trimmed.length() && Character.isDigit(trimmed.charAt(index))) {
+            int value = 0;
+            while (index < trimmed.length() && Character.isDigit(trimmed.charAt(index))) {
+                value = value * 10 + (trimmed.charAt(index++) - '0');
+            }
+            if (count == segments.length) {
+                segments = Arrays.copyOf(segments, count * 2);
+            }
+            segments[count++] = value;
+            if (index + 1 < trimmed.length() && trimmed.charAt(index) == '.' && Character.isDigit(trimmed.charAt(index + 1))) {
+                index++;
+            } else {
+                break;
+            }
+        }
+
+        // trailing zeros don't matter: 1.0 == 1.0.0
+        while (count > 0 && segments[count - 1] == 0) {
+            count--;
+        }
+
+        // skip the separator of the qualifier
+        if (index < trimmed.length() && (trimmed.charAt(index) == '-' || trimmed.charAt(index) == '.' || trimmed.charAt(index) == '_')) {
+            index++;
+        }
+        return new Version(trimmed, Arrays.copyOf(segments, count), trimmed.substring(index));
+    }
+
+    public boolean isNumeric() {
+        // without a numeric segment, the version sorts like 0 with a qualifier
+        return !this.text.isEmpty() && Character.isDigit(this.text.charAt(0));
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        // compare the numeric segments, missing segments are 0
+        int length = Math.max(this.segments.length, other.segments.length);
+        for (int index = 0; index < length; index++) {
+            int first = index < this.segments.length ? this.segments[index] : 0;
+            int second = index < other.segments.length ? other.segments[index] : 0;
+            if (first != second) {
+                return first < second ? -1 : 1;
+            }
+        }
+
+        // a release is newer than any qualified version (1.0 > 1.0-SNAPSHOT)
+        if (this.qualifier.equals(other.qualifier)) {
+            return 0;
+        } else if (this.qualifier.isEmpty()) {
+            return 1;
+        } else if (other.qualifier.isEmpty()) {
+            return -1;
+        }
+        return this.qualifier.compareTo(other.qualifier);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof Version && this.compareTo((Version) object) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(this.segments) + this.qualifier.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Minestar.de
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.minestar.library.plugin.units;
+
+public class VersionRange {
+
+    public static final VersionRange ANY = new VersionRange("", null, false, null, false);
+
+    private final String text;
+    private final Version minimum, maximum;
+    private final boolean minimumInclusive, maximumInclusive;
+
+    private VersionRange(String text, Version minimum, boolean minimumInclusive, Version maximum, boolean maximumInclusive) {
+        this.text = text;
+        this.minimum = minimum;
+        this.minimumInclusive = minimumInclusive;
+        this.maximum = maximum;
+        this.maximumInclusive = maximumInclusive;
+    }
+
+    public static VersionRange parse(String text) {
+        String trimmed = text.trim();
+
+        // empty or "*" accepts every version
+        if (trimmed.isEmpty() || trimmed.equals("*")) {
+            return ANY;
+        }
+
+        // a single version is the minimum: "1.0" == "[1.0,)"
+        char first = trimmed.charAt(0), last = trimmed.charAt(trimmed.length() - 1);
+        if (first != '[' && first != '(') {
+            return new VersionRange(trimmed, Version.parse(trimmed), true, null, false);
+        }
+
+        // intervals: "[1.0,2.0)", "(1.0,]", "[1.2]"
+        if (last != ']' && last != ')') {
+            throw new IllegalArgumentException("Version range '" + trimmed + "' is not closed!");
+        }
+        String inner = trimmed.substring(1, trimmed.length() - 1);
+        int comma = inner.indexOf(',');
+        if (comma < 0) {
+            // exact version
+            if (first != '[' || last != ']') {
+                throw new IllegalArgumentException("Version range '" + trimmed + "' must be inclusive!");
+            }
+            Version version = Version.parse(inner);
+            return new VersionRange(trimmed, version, true, version, true);
+        }
+        String lower = inner.substring(0, comma).trim(), upper = inner.substring(comma + 1).trim();
+        return new VersionRange(trimmed, lower.isEmpty() ? null : Version.parse(lower), first == '[', upper.isEmpty() ? null : Version.parse(upper), last == ']');
+    }
+
+    public boolean contains(Version version) {
+        if (this.minimum != null) {
+            int compare = version.compareTo(this.minimum);
+            if (compare < 0 || (compare == 0 && !this.minimumInclusive)) {
+                return false;
+            }
+        }
+        if (this.maximum != null) {
+            int compare = version.compareTo(this.maximum);
+            if (compare > 0 || (compare == 0 && !this.maximumInclusive)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return this.text.isEmpty() ? "*" : this.text;
+    }
+
+}